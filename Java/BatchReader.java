@@ -0,0 +1,130 @@
+package methods;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * BatchReader class
+ *
+ * Reads the lines of a file through a memory mapping. Lines are found by scanning the mapped bytes, without a
+ * read buffer filled ahead of them. The mapping has no heap array to decode from, so the bytes of each line are
+ * copied into one reused byte array and decoded from there into the String handed to the caller.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class BatchReader implements Closeable {
+  // Files larger than this are mapped one window at a time
+  private static final long WINDOW = 256L*1024*1024;
+
+  private FileChannel channel;
+  private long fileSize;
+  private long windowStart;
+  private MappedByteBuffer window;
+  private byte[] line = new byte[256];
+
+  /**
+    * BatchReader constructor
+    *
+    * @param fileName The name of the file to be read
+    * @throws IOException If the file cannot be opened or mapped
+    */
+  public BatchReader(String fileName) throws IOException {
+    this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+    this.fileSize = this.channel.size();
+    map(0, WINDOW);
+  }
+
+  /**
+    * Returns the next line without its line terminator ("\n" or "\r\n")
+    *
+    * @return The next line, null at the end of the file
+    * @throws IOException If the file cannot be mapped
+    */
+  public String nextLine() throws IOException {
+    while (true) {
+      int start = this.window.position();
+      int limit = this.window.limit();
+      if (start == limit && this.windowStart + limit >= this.fileSize) {
+        return null;
+      }
+
+      for (int i = start; i < limit; i++) {
+        if (this.window.get(i) == '\n') {
+          this.window.position(i+1);
+          return decode(start, i);
+        }
+      }
+
+      // No terminator left in this window: the rest of the file is the last line, or the window moves on
+      if (this.windowStart + limit >= this.fileSize) {
+        this.window.position(limit);
+        return decode(start, limit);
+      }
+      long lineStart = this.windowStart + start;
+      map(lineStart, start == 0 ? (long) limit*2 : WINDOW);
+    }
+  }
+
+  /**
+    * Returns the position of the next line
+    *
+    * @return The offset of its first byte in the file
+    */
+  public long position() {
+    return this.windowStart + this.window.position();
+  }
+
+  /**
+    * Moves back or ahead to a line
+    *
+    * @param position The offset of its first byte in the file, as returned by position()
+    * @throws IOException If the file cannot be mapped
+    */
+  public void seek(long position) throws IOException {
+    map(position, WINDOW);
+  }
+
+  /**
+    * Closes the file
+    *
+    * @throws IOException If the file cannot be closed
+    */
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+    * Maps a part of the file
+    *
+    * @param start The offset of the first byte to be mapped
+    * @param length The largest number of bytes to be mapped
+    * @throws IOException If the file cannot be mapped
+    */
+  private void map(long start, long length) throws IOException {
+    length = Math.min(Math.min(length, Integer.MAX_VALUE), this.fileSize - start);
+    this.windowStart = start;
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+  }
+
+  /**
+    * Decodes the bytes of a line
+    *
+    * @param start The position of the first byte of the line in the window
+    * @param end The position of the line terminator in the window
+    * @return The line as a String
+    */
+  private String decode(int start, int end) {
+    if (end > start && this.window.get(end-1) == '\r') {
+      end--;
+    }
+    int length = end - start;
+    if (length > this.line.length) {
+      this.line = new byte[Math.max(length, this.line.length*2)];
+    }
+    this.window.get(start, this.line, 0, length);
+    return new String(this.line, 0, length, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,33 @@
+package methods;
+
+/**
+ * CallTimeoutException class
+ *
+ * Thrown when a call guarded by a Watchdog does not finish before its deadline
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class CallTimeoutException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  private final Diagnostic diagnostic;
+
+  /**
+    * CallTimeoutException constructor
+    *
+    * @param diagnostic The diagnostic of the call that timed out
+    */
+  public CallTimeoutException(Diagnostic diagnostic) {
+    super(diagnostic.getMessage());
+    this.diagnostic = diagnostic;
+  }
+
+  /**
+    * Returns the diagnostic of the call that timed out
+    *
+    * @return The diagnostic, pointing at the function
+    */
+  public Diagnostic getDiagnostic() {
+    return this.diagnostic;
+  }
+}
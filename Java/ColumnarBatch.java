@@ -0,0 +1,647 @@
+package methods;
+
+import java.io.*;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ColumnarBatch class
+ *
+ * Evaluates one expression for every row of a CSV file, a column at a time
+ *
+ * The first line of the file names the columns, which the expression refers to as variables ($name). The type of
+ * each column is taken from all of its rows, in a first pass over the file: int if they all hold ints, float if
+ * they all hold numbers, String otherwise. The expression is resolved once for those types. Each chunk of rows is
+ * then loaded into primitive columns, and each function of the expression is called for the whole chunk in one loop
+ * before the function above it, with no dispatch per row. Chunks are evaluated by worker threads and their results
+ * written in input order, one line per row. A row whose value does not fit the type of its column, or for which a
+ * call fails, prints the same message as a failing expression does in the REPL.
+ *
+ * With a Watchdog, every row gets the timeout of an expression to itself: its calls are guarded like those of an
+ * expression in the REPL, and the time each call takes is charged to its row. A row that runs out of time prints the
+ * timeout message instead of a value, and its later calls are skipped.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ColumnarBatch {
+  public static final int CHUNK_ROWS = 4096;
+  private static final String FAILED = "Number exceeds Java number range";
+
+  private MethodIndex index;
+  private String exp;
+  private int threads;
+  private String[] header;
+  private ArrayList<Slot> slots = new ArrayList<Slot>();
+  private ArrayList<Step> steps = new ArrayList<Step>();
+  private Diagnostic diagnostic;
+  private Watchdog watchdog;
+
+  /**
+    * ColumnarBatch constructor
+    *
+    * @param index The dispatch index of the classes containing all concrete methods
+    * @param exp The expression evaluated for every row, a function call
+    * @param threads The number of worker threads
+    */
+  public ColumnarBatch(MethodIndex index, String exp, int threads) {
+    this.index = index;
+    this.exp = exp;
+    this.threads = Math.max(threads, 1);
+  }
+
+  /**
+    * Sets the watchdog that bounds how long the calls of each row may take
+    *
+    * @param watchdog The watchdog, or null to let every call run until it returns
+    */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+    * Evaluates the expression for every row read from a CSV file
+    *
+    * @param reader The reader of the CSV file
+    * @param out The stream the results are written to
+    * @throws IOException If the CSV file cannot be read
+    * @throws ParseException If the expression is not a function call, cannot be parsed, calls a function that
+    * does not match any method for the types of the columns, or uses a variable that is not a column
+    */
+  public void run(BatchReader reader, PrintStream out) throws IOException, ParseException {
+    String line = reader.nextLine();
+    this.header = line == null ? new String[0] : split(line).toArray(new String[0]);
+    for (int i = 0; i < this.header.length; i++) {
+      this.header[i] = this.header[i].trim();
+    }
+
+    long start = reader.position();
+    plan(types(reader));
+    reader.seek(start);
+    String[] chunk = new String[CHUNK_ROWS];
+    int rows = read(reader, chunk);
+
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads, r -> {
+      Thread t = new Thread(r, "column-worker");
+      t.setDaemon(true);
+      return t;
+    });
+    ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    try {
+      while (rows > 0) {
+        String[] lines = chunk;
+        int count = rows;
+        pending.add(pool.submit(() -> evaluate(lines, count)));
+        ParallelBatch.drain(pending, out, 2*this.threads);
+        chunk = new String[CHUNK_ROWS];
+        rows = read(reader, chunk);
+      }
+      ParallelBatch.drain(pending, out, 0);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+    * Reads the lines of the next chunk
+    *
+    * @param reader The reader of the CSV file
+    * @param chunk Receives the lines
+    * @return The number of lines read, 0 at the end of the file
+    * @throws IOException If the CSV file cannot be read
+    */
+  private static int read(BatchReader reader, String[] chunk) throws IOException {
+    int rows = 0;
+    String line;
+    while (rows < chunk.length && (line = reader.nextLine()) != null) {
+      chunk[rows++] = line;
+    }
+    return rows;
+  }
+
+  /**
+    * Decides the type of each column from the rows left in a CSV file
+    *
+    * @param reader The reader of the CSV file, which is left at its end
+    * @return The type tag of each column: INT, FLOAT or STRING
+    * @throws IOException If the CSV file cannot be read
+    */
+  private NodeType[] types(BatchReader reader) throws IOException {
+    NodeType[] types = new NodeType[this.header.length];
+    Arrays.fill(types, NodeType.INT);
+    String line;
+    while ((line = reader.nextLine()) != null) {
+      ArrayList<String> fields = split(line);
+      for (int i = 0; i < types.length && i < fields.size(); i++) {
+        NodeType type = typeOf(fields.get(i));
+        if (type == NodeType.STRING || types[i] == NodeType.STRING) {
+          types[i] = NodeType.STRING;
+        }
+        else if (type == NodeType.FLOAT) {
+          types[i] = NodeType.FLOAT;
+        }
+      }
+    }
+    return types;
+  }
+
+  /**
+    * Returns the type of a value the way the parser types a literal
+    *
+    * @param value The value
+    * @return INT, FLOAT or STRING
+    */
+  private static NodeType typeOf(String value) {
+    boolean digits = false;
+    boolean point = false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (Character.isDigit(c)) {
+        digits = true;
+      }
+      else if (c == '.' && !point) {
+        point = true;
+      }
+      else if (c != '-' || i > 0) {
+        return NodeType.STRING;
+      }
+    }
+    if (!digits) {
+      return NodeType.STRING;
+    }
+    return point ? NodeType.FLOAT : NodeType.INT;
+  }
+
+  /**
+    * Parses the expression and resolves every function in it for the types of the columns
+    *
+    * @param types The type tag of each column
+    * @throws ParseException If the expression cannot be parsed or resolved
+    */
+  private void plan(NodeType[] types) throws ParseException {
+    FlatTree tree = new FlatTree();
+    ExpressionParser parser = new ExpressionParser();
+    int root = parser.tryParse(this.exp, tree);
+    if (root < 0) {
+      throw parser.getDiagnostic().toException();
+    }
+    if (tree.getTag(root) != NodeType.FUNC) {
+      throw new ParseException("Not a function call: " + this.exp, 0);
+    }
+    if (plan(tree, root, types) < 0) {
+      throw this.diagnostic.toException();
+    }
+  }
+
+  /**
+    * Resolves a function node and its children, adding the steps that compute them after those of its children
+    *
+    * @param tree The parse tree of the expression
+    * @param node The id of the function node
+    * @param types The type tag of each column
+    * @return The slot holding the values of the node, -1 when a function does not match any methods or a
+    * variable is not a column
+    */
+  private int plan(FlatTree tree, int node, NodeType[] types) {
+    int[] args = new int[tree.getChildCount(node)];
+    String[] argTypes = new String[args.length];
+    int i = 0;
+    for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+      switch (tree.getTag(child)) {
+        case FUNC:
+          args[i] = plan(tree, child, types);
+          if (args[i] < 0) {
+            return -1;
+          }
+          break;
+        case VARIABLE:
+          int field = Arrays.asList(this.header).indexOf(tree.getText(child).substring(1));
+          if (field < 0) {
+            this.diagnostic = Diagnostic.unbound(tree.getText(child), tree.getOffset(child));
+            return -1;
+          }
+          args[i] = input(field, types[field]);
+          break;
+        default:
+          Slot slot = new Slot(tree.getType(child));
+          slot.literal = true;
+          try {
+            slot.value = literal(slot.tag, tree.getText(child));
+          }
+          catch (NumberFormatException e) {
+            // Fails every row, like the literal fails the expression in the REPL
+          }
+          args[i] = add(slot);
+      }
+      argTypes[i] = this.slots.get(args[i]).type;
+      i++;
+    }
+
+    Invoker m = this.index.resolve(tree.getText(node), argTypes);
+    if (m == null) {
+      this.diagnostic = Diagnostic.noMatch(tree.getText(node), argTypes, tree.getOffset(node));
+      return -1;
+    }
+    Step step = new Step(m, tree.getText(node), tree.getOffset(node), args, add(new Slot(m.getReturnType())));
+    this.steps.add(step);
+    return step.out;
+  }
+
+  /**
+    * Returns the slot of a column, adding it the first time the column is used
+    *
+    * @param field The position of the column
+    * @param tag The type tag of the column
+    * @return The slot
+    */
+  private int input(int field, NodeType tag) {
+    for (int s = 0; s < this.slots.size(); s++) {
+      if (this.slots.get(s).field == field) {
+        return s;
+      }
+    }
+    Slot slot = new Slot(tag.getName());
+    slot.field = field;
+    return add(slot);
+  }
+
+  /**
+    * Adds a slot
+    *
+    * @param slot The slot
+    * @return The position of the slot
+    */
+  private int add(Slot slot) {
+    this.slots.add(slot);
+    return this.slots.size()-1;
+  }
+
+  /**
+    * Evaluates the expression for a chunk of rows
+    *
+    * @param lines The rows
+    * @param rows The number of rows
+    * @return The result of each row, one per line
+    */
+  private byte[] evaluate(String[] lines, int rows) {
+    Column[] columns = new Column[this.slots.size()];
+    boolean[] failed = new boolean[rows];
+    // The time spent on the calls of each row, and the timeout of the rows that ran out of it
+    long[] spent = this.watchdog == null ? null : new long[rows];
+    Diagnostic[] timeouts = this.watchdog == null ? null : new Diagnostic[rows];
+    for (int s = 0; s < columns.length; s++) {
+      Slot slot = this.slots.get(s);
+      if (slot.field >= 0 || slot.literal) {
+        columns[s] = new Column(slot.tag, rows);
+      }
+    }
+
+    load(lines, rows, columns, failed);
+    for (int s = 0; s < columns.length; s++) {
+      Slot slot = this.slots.get(s);
+      if (slot.literal) {
+        fill(columns[s], slot, rows, failed);
+      }
+    }
+    for (Step step : this.steps) {
+      columns[step.out] = new Column(this.slots.get(step.out).tag, rows);
+      call(step, columns, rows, failed, spent, timeouts);
+    }
+
+    Step last = this.steps.get(this.steps.size()-1);
+    Column result = columns[last.out];
+    NodeType tag = this.slots.get(last.out).tag;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows*8);
+    PrintStream chunkOut = new PrintStream(bytes);
+    for (int r = 0; r < rows; r++) {
+      if (timeouts != null && timeouts[r] != null) {
+        chunkOut.println(timeouts[r].getMessage());
+      }
+      else if (failed[r]) {
+        chunkOut.println(FAILED);
+      }
+      else if (tag == NodeType.INT) {
+        chunkOut.println(result.ints[r]);
+      }
+      else if (tag == NodeType.FLOAT) {
+        chunkOut.println(result.floats[r]);
+      }
+      else {
+        chunkOut.println(result.values[r]);
+      }
+    }
+    chunkOut.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+    * Parses the columns used by the expression out of the rows of a chunk
+    *
+    * @param lines The rows
+    * @param rows The number of rows
+    * @param columns The columns of the chunk
+    * @param failed Marks the rows with a value that does not fit the type of its column
+    */
+  private void load(String[] lines, int rows, Column[] columns, boolean[] failed) {
+    for (int r = 0; r < rows; r++) {
+      ArrayList<String> fields = split(lines[r]);
+      for (int s = 0; s < columns.length; s++) {
+        Slot slot = this.slots.get(s);
+        if (slot.field < 0) {
+          continue;
+        }
+        if (slot.field >= fields.size()) {
+          failed[r] = true;
+          continue;
+        }
+        String value = fields.get(slot.field);
+        try {
+          switch (slot.tag) {
+            case INT:
+              columns[s].ints[r] = Integer.parseInt(value);
+              break;
+            case FLOAT:
+              columns[s].floats[r] = Float.parseFloat(value);
+              break;
+            default:
+              columns[s].values[r] = value;
+          }
+        }
+        catch (NumberFormatException e) {
+          failed[r] = true;
+        }
+      }
+    }
+  }
+
+  /**
+    * Repeats the value of a literal for every row of a chunk
+    *
+    * @param column The column of the literal
+    * @param slot The slot of the literal
+    * @param rows The number of rows
+    * @param failed Marks every row when the literal cannot be parsed
+    */
+  private static void fill(Column column, Slot slot, int rows, boolean[] failed) {
+    if (slot.value == null) {
+      Arrays.fill(failed, true);
+    }
+    else if (slot.tag == NodeType.INT) {
+      Arrays.fill(column.ints, (Integer) slot.value);
+    }
+    else if (slot.tag == NodeType.FLOAT) {
+      Arrays.fill(column.floats, (Float) slot.value);
+    }
+    else {
+      Arrays.fill(column.values, slot.value);
+    }
+  }
+
+  /**
+    * Calls the method of a step for every row of a chunk that has not failed
+    *
+    * @param step The step
+    * @param columns The columns of the chunk, holding the arguments of the step
+    * @param rows The number of rows
+    * @param failed Marks the rows for which the call fails
+    * @param spent The time spent on the calls of each row, null without a watchdog
+    * @param timeouts Receives the timeout of the rows whose call times out, null without a watchdog
+    */
+  private void call(Step step, Column[] columns, int rows, boolean[] failed, long[] spent, Diagnostic[] timeouts) {
+    Invoker m = step.m;
+    boolean guarded = this.watchdog != null && this.watchdog.guards(step.function);
+    Column out = columns[step.out];
+    boolean ints = true;
+    boolean floats = true;
+    for (int arg : step.args) {
+      ints &= this.slots.get(arg).tag == NodeType.INT;
+      floats &= this.slots.get(arg).tag == NodeType.FLOAT;
+    }
+
+    if (m.getShape() == Invoker.INT_INT && ints && !guarded) {
+      int[] x = columns[step.args[0]].ints;
+      int[] y = columns[step.args[1]].ints;
+      for (int r = 0; r < rows; r++) {
+        if (!failed[r]) {
+          try {
+            out.ints[r] = m.invokeInt(x[r], y[r]);
+          }
+          catch (Throwable e) {
+            failed[r] = true;
+          }
+        }
+      }
+      return;
+    }
+    if (m.getShape() == Invoker.FLOAT_FLOAT && floats && !guarded) {
+      float[] x = columns[step.args[0]].floats;
+      float[] y = columns[step.args[1]].floats;
+      for (int r = 0; r < rows; r++) {
+        if (!failed[r]) {
+          try {
+            out.floats[r] = m.invokeFloat(x[r], y[r]);
+          }
+          catch (Throwable e) {
+            failed[r] = true;
+          }
+        }
+      }
+      return;
+    }
+
+    NodeType tag = this.slots.get(step.out).tag;
+    Object[] args = new Object[step.args.length];
+    for (int r = 0; r < rows; r++) {
+      if (failed[r]) {
+        continue;
+      }
+      for (int i = 0; i < args.length; i++) {
+        args[i] = value(columns[step.args[i]], this.slots.get(step.args[i]).tag, r);
+      }
+      try {
+        Object res = guarded ? invoke(step, args.clone(), spent, r) : m.invoke(args);
+        if (res == null) {
+          failed[r] = true;
+        }
+        else if (tag == NodeType.INT) {
+          out.ints[r] = (Integer) res;
+        }
+        else if (tag == NodeType.FLOAT) {
+          out.floats[r] = (Float) res;
+        }
+        else {
+          out.values[r] = res;
+        }
+      }
+      catch (CallTimeoutException e) {
+        failed[r] = true;
+        timeouts[r] = e.getDiagnostic();
+      }
+      catch (Throwable e) {
+        failed[r] = true;
+      }
+    }
+  }
+
+  /**
+    * Calls the method of a step for one row through the watchdog, within what is left of the timeout of the row
+    *
+    * @param step The step
+    * @param args The arguments of the call, which must not be reused
+    * @param spent The time spent on the calls of each row, charged with this call
+    * @param r The row
+    * @return The result of the call
+    * @throws CallTimeoutException If the call does not finish in time
+    * @throws Throwable Anything thrown by the method
+    */
+  private Object invoke(Step step, Object[] args, long[] spent, int r) throws Throwable {
+    long start = System.nanoTime();
+    long timeout = TimeUnit.MILLISECONDS.toNanos(this.watchdog.getExpressionTimeout());
+    long previous = Watchdog.setDeadline(timeout > 0 ? start + timeout - spent[r] : 0);
+    try {
+      return this.watchdog.invoke(step.m, args, step.function, step.offset);
+    }
+    finally {
+      Watchdog.setDeadline(previous);
+      spent[r] += System.nanoTime() - start;
+    }
+  }
+
+  /**
+    * Returns the argument value of a row
+    *
+    * Like the Evaluator, only int, float and String values are passed on. Any other value is replaced with null.
+    *
+    * @param column The column of the argument
+    * @param tag The type tag of the column
+    * @param r The row
+    * @return The boxed value
+    */
+  private static Object value(Column column, NodeType tag, int r) {
+    switch (tag) {
+      case INT:
+        return Integer.valueOf(column.ints[r]);
+      case FLOAT:
+        return Float.valueOf(column.floats[r]);
+      case STRING:
+        return column.values[r];
+      default:
+        return null;
+    }
+  }
+
+  /**
+    * Parses the value of a literal
+    *
+    * @param tag The type tag of the literal
+    * @param text The text of the literal
+    * @return The boxed value
+    * @throws NumberFormatException If a number cannot be parsed
+    */
+  private static Object literal(NodeType tag, String text) {
+    switch (tag) {
+      case INT:
+        return Integer.valueOf(text);
+      case FLOAT:
+        return Float.valueOf(text);
+      default:
+        return text;
+    }
+  }
+
+  /**
+    * Splits a CSV line into its fields. Fields may be quoted, with "" standing for a quotation mark inside them.
+    *
+    * @param line The line
+    * @return The fields
+    */
+  static ArrayList<String> split(String line) {
+    ArrayList<String> fields = new ArrayList<String>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        }
+        else if (i+1 < line.length() && line.charAt(i+1) == '"') {
+          field.append(c);
+          i++;
+        }
+        else {
+          quoted = false;
+        }
+      }
+      else if (c == '"') {
+        quoted = true;
+      }
+      else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      }
+      else if (c != '\r') {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  /**
+   * A column of the expression: a column of the file, a literal, or the values of a function
+   */
+  private static class Slot {
+    private final String type;
+    private final NodeType tag;
+    private int field = -1;
+    private boolean literal;
+    private Object value;
+
+    Slot(String type) {
+      this.type = type;
+      this.tag = NodeType.of(type);
+    }
+  }
+
+  /**
+   * A function of the expression, called for every row of a chunk
+   */
+  private static class Step {
+    private final Invoker m;
+    private final String function;
+    private final int offset;
+    private final int[] args;
+    private final int out;
+
+    Step(Invoker m, String function, int offset, int[] args, int out) {
+      this.m = m;
+      this.function = function;
+      this.offset = offset;
+      this.args = args;
+      this.out = out;
+    }
+  }
+
+  /**
+   * The values of a slot for the rows of a chunk
+   */
+  private static class Column {
+    private int[] ints;
+    private float[] floats;
+    private Object[] values;
+
+    Column(NodeType tag, int rows) {
+      if (tag == NodeType.INT) {
+        this.ints = new int[rows];
+      }
+      else if (tag == NodeType.FLOAT) {
+        this.floats = new float[rows];
+      }
+      else {
+        this.values = new Object[rows];
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package methods;
+
+import java.lang.invoke.*;
+
+/**
+ * CompiledExpression class
+ *
+ * An expression whose methods are resolved and bound, ready to be evaluated any number of times
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class CompiledExpression {
+  private final MethodHandle handle;
+  private final String type;
+  private final String exp;
+
+  /**
+    * CompiledExpression constructor
+    *
+    * @param handle A handle taking no arguments that evaluates the expression
+    * @param type The node type of the result
+    * @param exp The entered expression
+    */
+  public CompiledExpression(MethodHandle handle, String type, String exp) {
+    this.handle = handle;
+    this.type = type;
+    this.exp = exp;
+  }
+
+  /**
+    * Evaluates the expression
+    *
+    * @return The result of the expression
+    * @throws ArithmeticException When a method call fails
+    * @throws CallTimeoutException When a method call guarded by a Watchdog does not finish in time
+    */
+  public Object evaluate() {
+    try {
+      return (Object) this.handle.invokeExact();
+    }
+    catch (CallTimeoutException e) {
+      throw e;
+    }
+    catch (Throwable e) {
+      throw new ArithmeticException();
+    }
+  }
+
+  /**
+    * Returns the node type of the result
+    *
+    * @return The type of the result
+    */
+  public String getType() {
+    return this.type;
+  }
+
+  /**
+    * Returns the expression this was compiled from
+    *
+    * @return The entered expression
+    */
+  public String getExpression() {
+    return this.exp;
+  }
+}
@@ -0,0 +1,238 @@
+package methods;
+
+import java.io.PrintStream;
+import java.text.ParseException;
+
+/**
+ * Diagnostic class
+ *
+ * An error found in an entered expression. A diagnostic only records the kind, offset and arguments of the error;
+ * its message is built when it is printed, so rejecting an expression costs no more than accepting one.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Diagnostic {
+  /**
+   * The kinds of errors, each with the start of its message
+   */
+  public enum Kind {
+    TOKEN("Encountered incorrect token at offset "),
+    BRACKET("Encountered incorrect bracket at offset "),
+    END_OF_INPUT("Encountered end-of-input while reading string beginning at offset "),
+    NO_MATCH("Matching function for '("),
+    UNBOUND("Unbound variable "),
+    DEPTH("Expression nested too deeply to compile at offset "),
+    TIMEOUT("Call to '");
+
+    private final String template;
+
+    Kind(String template) {
+      this.template = template;
+    }
+  }
+
+  private final Kind kind;
+  private final int offset;
+  private final int caret;
+  private final int start;
+  private final String method;
+  private final String[] types;
+  private final long millis;
+
+  /**
+    * Diagnostic constructor
+    *
+    * @param kind The kind of error
+    * @param offset The offset of the error
+    * @param caret The number of dashes in the arrow pointing at the error
+    * @param start The offset of the unfinished string or function, -1 if there is none
+    * @param method The name of the function without a matching method or of the unbound variable, null if there is
+    * none
+    * @param types The node types of the arguments of that function, null if there is none
+    */
+  private Diagnostic(Kind kind, int offset, int caret, int start, String method, String[] types) {
+    this(kind, offset, caret, start, method, types, 0);
+  }
+
+  /**
+    * Diagnostic constructor
+    *
+    * @param kind The kind of error
+    * @param offset The offset of the error
+    * @param caret The number of dashes in the arrow pointing at the error
+    * @param start The offset of the unfinished string or function, -1 if there is none
+    * @param method The name of the function or variable concerned, null if there is none
+    * @param types The node types of the arguments of that function, null if there is none
+    * @param millis The timeout that passed, 0 if there is none
+    */
+  private Diagnostic(Kind kind, int offset, int caret, int start, String method, String[] types, long millis) {
+    this.kind = kind;
+    this.offset = offset;
+    this.caret = caret;
+    this.start = start;
+    this.method = method;
+    this.types = types;
+    this.millis = millis;
+  }
+
+  /**
+    * Creates the diagnostic of an unexpected character
+    *
+    * @param kind TOKEN or BRACKET
+    * @param offset The offset of the character
+    * @return The diagnostic
+    */
+  public static Diagnostic token(Kind kind, int offset) {
+    return new Diagnostic(kind, offset, offset+1, -1, null, null);
+  }
+
+  /**
+    * Creates the diagnostic of a right bracket without a left bracket, found after the bracket was consumed
+    *
+    * @param offset The offset of the bracket
+    * @return The diagnostic
+    */
+  public static Diagnostic unopened(int offset) {
+    return new Diagnostic(Kind.BRACKET, offset, offset, -1, null, null);
+  }
+
+  /**
+    * Creates the diagnostic of an expression that ended inside a string or function
+    *
+    * @param start The offset of the unfinished string or function
+    * @param offset The length of the expression
+    * @return The diagnostic
+    */
+  public static Diagnostic endOfInput(int start, int offset) {
+    return new Diagnostic(Kind.END_OF_INPUT, offset, offset+1, start, null, null);
+  }
+
+  /**
+    * Creates the diagnostic of a function without a matching method
+    *
+    * @param method The name of the function
+    * @param types The node types of the arguments, which are copied
+    * @param offset The offset of the function
+    * @return The diagnostic
+    */
+  public static Diagnostic noMatch(String method, String[] types, int offset) {
+    return new Diagnostic(Kind.NO_MATCH, offset, offset+1, -1, method, types.clone());
+  }
+
+  /**
+    * Creates the diagnostic of a variable that has not been declared
+    *
+    * @param name The variable, including its $
+    * @param offset The offset of the variable
+    * @return The diagnostic
+    */
+  public static Diagnostic unbound(String name, int offset) {
+    return new Diagnostic(Kind.UNBOUND, offset, offset+1, -1, name, null);
+  }
+
+  /**
+    * Creates the diagnostic of a call nested more than ExpressionCompiler.MAX_DEPTH calls deep
+    *
+    * @param offset The offset of the call
+    * @return The diagnostic
+    */
+  public static Diagnostic tooDeep(int offset) {
+    return new Diagnostic(Kind.DEPTH, offset, offset+1, -1, null, null);
+  }
+
+  /**
+    * Creates the diagnostic of a call that did not finish before its deadline
+    *
+    * @param method The name of the function
+    * @param millis The timeout that passed, in milliseconds
+    * @param offset The offset of the function
+    * @return The diagnostic
+    */
+  public static Diagnostic timeout(String method, long millis, int offset) {
+    return new Diagnostic(Kind.TIMEOUT, offset, offset+1, -1, method, null, millis);
+  }
+
+  /**
+    * Returns the kind of error
+    *
+    * @return The kind
+    */
+  public Kind getKind() {
+    return this.kind;
+  }
+
+  /**
+    * Returns the offset of the error
+    *
+    * @return The offset
+    */
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+    * Builds the error message
+    *
+    * @return The message
+    */
+  public String getMessage() {
+    switch (this.kind) {
+      case END_OF_INPUT:
+        return this.kind.template + this.start + " at offset " + this.offset;
+      case NO_MATCH:
+        StringBuilder message = new StringBuilder(this.kind.template).append(this.method);
+        for (String type : this.types) {
+          message.append(' ').append(typeName(type));
+        }
+        return message.append(")' not found at offset ").append(this.offset).toString();
+      case UNBOUND:
+        return this.kind.template + this.method + " at offset " + this.offset;
+      case TIMEOUT:
+        return this.kind.template + this.method + "' timed out after " + this.millis + " ms at offset " + this.offset;
+      default:
+        return this.kind.template + this.offset;
+    }
+  }
+
+  /**
+    * Prints the error message, the expression and an arrow pointing at the error
+    *
+    * @param out The stream to print to
+    * @param exp The entered expression
+    */
+  public void print(PrintStream out, String exp) {
+    out.println(getMessage());
+    out.println(exp);
+    out.print(ParseTree.arrow(this.caret));
+  }
+
+  /**
+    * Creates the exception callers of the throwing parse and compile methods expect
+    *
+    * @return The exception
+    */
+  public ParseException toException() {
+    // The end-of-input message of the exception has never included the offset it was found at
+    String message = this.kind == Kind.END_OF_INPUT ? this.kind.template + this.start : getMessage();
+    return new ParseException(message, this.offset);
+  }
+
+  /**
+    * Returns the name a node type is printed with in error messages
+    *
+    * @param type The node type
+    * @return The printed name
+    */
+  private static String typeName(String type) {
+    switch(type) {
+      case "Integer":
+        return "int";
+      case "Float":
+        return "float";
+      case "String":
+        return "string";
+      default:
+        return type;
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package methods;
+
+import java.text.ParseException;
+import java.util.concurrent.*;
+
+/**
+ * Engine class
+ *
+ * Thread-safe entry point for compiling and evaluating expressions from any number of threads
+ *
+ * A CompiledExpression is immutable: evaluating it passes values along the call stack of the evaluating thread
+ * instead of storing them in a tree, so one compiled expression can be evaluated concurrently without locks.
+ * Parsing and compiling need scratch space, which each thread keeps for itself. Nothing on the evaluation path
+ * takes a lock unless a MemoCache is used.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Engine {
+  public static final int DEFAULT_MAX_ENTRIES = ExpressionCache.DEFAULT_MAX_ENTRIES;
+
+  private final MethodIndex index;
+  private final MemoCache memo;
+  private final Metrics metrics;
+  private final Purity purity;
+  private final ConcurrentHashMap<String, CompiledExpression> expressions = new ConcurrentHashMap<String, CompiledExpression>();
+  private final ThreadLocal<Frontend> frontends = ThreadLocal.withInitial(this::frontend);
+
+  /**
+    * Engine constructor
+    *
+    * @param index The dispatch index of the classes containing all concrete methods
+    */
+  public Engine(MethodIndex index) {
+    this(index, null, null);
+  }
+
+  /**
+    * Engine constructor
+    *
+    * @param index The dispatch index of the classes containing all concrete methods
+    * @param memo The cache used for the results of pure methods, or null to call every method
+    * @param metrics The metrics recording the calls, or null to record nothing
+    */
+  public Engine(MethodIndex index, MemoCache memo, Metrics metrics) {
+    this.index = index;
+    this.memo = memo;
+    this.metrics = metrics;
+    this.purity = memo == null ? new Purity() : memo.getPurity();
+  }
+
+  /**
+    * Returns the dispatch index expressions are compiled against
+    *
+    * @return The index
+    */
+  public MethodIndex getIndex() {
+    return this.index;
+  }
+
+  /**
+    * Compiles an expression, or returns its earlier compiled form
+    *
+    * Unlike the REPL, which calls the methods before an unresolved function to find out whether one of them
+    * fails first, the engine reports an unresolved function without calling anything.
+    *
+    * @param exp The expression, a function call
+    * @return The compiled expression, which may be evaluated from any thread
+    * @throws ParseException If the expression is not a function call, cannot be parsed, calls a function that
+    * does not match any method, or is nested more than ExpressionCompiler.MAX_DEPTH calls deep
+    */
+  public CompiledExpression compile(String exp) throws ParseException {
+    CompiledExpression expression = this.expressions.get(exp);
+    if (expression != null) {
+      return expression;
+    }
+
+    Frontend frontend = this.frontends.get();
+    if (frontend.busy) {
+      // Compiling folds calls, and a folded method may itself compile an expression on this thread
+      frontend = frontend();
+    }
+    frontend.busy = true;
+    try {
+      expression = frontend.compile(exp);
+    }
+    finally {
+      frontend.busy = false;
+    }
+
+    if (this.expressions.size() >= DEFAULT_MAX_ENTRIES) {
+      this.expressions.clear();
+    }
+    CompiledExpression earlier = this.expressions.putIfAbsent(exp, expression);
+    return earlier == null ? expression : earlier;
+  }
+
+  /**
+    * Compiles and evaluates an expression
+    *
+    * @param exp The expression, a function call
+    * @return The result of the expression
+    * @throws ParseException If the expression cannot be parsed or a function does not match any method
+    * @throws ArithmeticException When a method call fails
+    */
+  public Object evaluate(String exp) throws ParseException {
+    return compile(exp).evaluate();
+  }
+
+  /**
+    * Prepares an expression with variables, e.g. (add (mul $x 3) $y), to be evaluated with different values
+    *
+    * Parsing, resolving and binding happen here, once; evaluating the prepared expression only calls the methods.
+    * Prepared expressions are not cached.
+    *
+    * @param exp The expression, a function call
+    * @param names The names of the variables, without their $
+    * @param types The types of the variables: int, float or String (Integer and Float are taken as int and float)
+    * @return The prepared expression, which may be evaluated from any thread
+    * @throws ParseException If the expression is not a function call, cannot be parsed, calls a function that
+    * does not match any method for the declared types, or uses a variable that is not declared
+    * @throws IllegalArgumentException If the names and types differ in length or a type is not supported
+    */
+  public PreparedExpression prepare(String exp, String[] names, Class[] types) throws ParseException {
+    if (names.length != types.length) {
+      throw new IllegalArgumentException("Expected a type for each of the " + names.length + " variables");
+    }
+    Class[] declared = new Class[types.length];
+    for (int i = 0; i < types.length; i++) {
+      declared[i] = variableType(types[i]);
+    }
+
+    Frontend frontend = this.frontends.get();
+    if (frontend.busy) {
+      frontend = frontend();
+    }
+    frontend.busy = true;
+    frontend.tree.setVariables(names, declared);
+    try {
+      frontend.parse(exp);
+      PreparedExpression expression = frontend.compiler.tryPrepare(frontend.tree, frontend.root, exp, names, declared);
+      if (expression == null) {
+        throw frontend.compiler.getDiagnostic().toException();
+      }
+      return expression;
+    }
+    finally {
+      frontend.tree.setVariables(null, null);
+      frontend.busy = false;
+    }
+  }
+
+  /**
+    * Returns the type a variable is bound with
+    *
+    * @param type The declared type
+    * @return int, float or String
+    * @throws IllegalArgumentException If the type is not supported
+    */
+  private static Class variableType(Class type) {
+    if (type == int.class || type == Integer.class) {
+      return int.class;
+    }
+    if (type == float.class || type == Float.class) {
+      return float.class;
+    }
+    if (type == String.class) {
+      return String.class;
+    }
+    throw new IllegalArgumentException("Variables are int, float or String, not " + type.getName());
+  }
+
+  /**
+    * Creates the scratch space for compiling on one thread
+    *
+    * @return The scratch space
+    */
+  private Frontend frontend() {
+    Frontend frontend = new Frontend();
+    frontend.tree.setSharing(this.index, this.purity);
+    frontend.compiler = new ExpressionCompiler(this.index);
+    frontend.compiler.setPurity(this.purity);
+    frontend.compiler.setMemoCache(this.memo);
+    frontend.compiler.setMetrics(this.metrics);
+    return frontend;
+  }
+
+  /**
+    * Parser, tree and compiler used by one thread
+    */
+  private static class Frontend {
+    private final ExpressionParser parser = new ExpressionParser();
+    private final FlatTree tree = new FlatTree();
+    private ExpressionCompiler compiler;
+    private int root;
+    private boolean busy;
+
+    void parse(String exp) throws ParseException {
+      this.root = this.parser.tryParse(exp, this.tree);
+      if (this.root < 0) {
+        throw this.parser.getDiagnostic().toException();
+      }
+      if (this.tree.getTag(this.root) != NodeType.FUNC) {
+        throw new ParseException("Not a function call: " + exp, 0);
+      }
+    }
+
+    CompiledExpression compile(String exp) throws ParseException {
+      parse(exp);
+      CompiledExpression expression = this.compiler.tryCompile(this.tree, this.root, exp);
+      if (expression == null) {
+        throw this.compiler.getDiagnostic().toException();
+      }
+      return expression;
+    }
+  }
+}
@@ -28,8 +28,8 @@ public class Evaluator {
     String errorMessage = "Matching function for '(";
     String type = "";
     for (Node child : node.getChildren()) {
-      if (isBottom(child) && child.getType().equals("func")) {
-        Method currentMethod = jarProcessor.validMethod(child.getData(), cls, getValues(child));
+      if (isBottom(child) && child.getTag() == NodeType.FUNC) {
+        Invoker currentMethod = jarProcessor.getIndex(cls).resolve(child.getData(), getValues(child));
         if (currentMethod == null) {
           errorMessage += child.getData();
           for (int i=0; i<child.getChildren().size(); i++) {
@@ -53,14 +53,14 @@ public class Evaluator {
           System.out.print(tree.getArrow(child.getNodeIndex()+1));
           throw new ParseException(errorMessage, child.getNodeIndex());
         }
-        evaluateNode(child, cls, currentMethod);
+        evaluateNode(child, currentMethod);
       }
-      else if (!isBottom(child) && child.getType().equals("func")) {
+      else if (!isBottom(child) && child.getTag() == NodeType.FUNC) {
         evaluateTree(child, cls, jarProcessor, exp);
       }
     }
 
-    Method rootMethod = jarProcessor.validMethod(node.getData(), cls, getValues(node));
+    Invoker rootMethod = jarProcessor.getIndex(cls).resolve(node.getData(), getValues(node));
     errorMessage = "Matching function for '(";
     if (rootMethod == null) {
       errorMessage += node.getData();
@@ -86,7 +86,7 @@ public class Evaluator {
       throw new ParseException(errorMessage, node.getNodeIndex());
     }
 
-    evaluateNode(node, cls, rootMethod);
+    evaluateNode(node, rootMethod);
   }
 
   /**
@@ -97,47 +97,69 @@ public class Evaluator {
     * @param m The method returned from the class
     */
   public void evaluateNode(Node functionNode, Class cls, Method m) {
+    evaluateNode(functionNode, new Invoker(m));
+  }
+
+  /**
+    * Evaluates a function node using its children (if any)
+    *
+    * (int, int)int and (float, float)float methods are called without boxing their arguments
+    *
+    * @param funcionNode The node to be evaluated
+    * @param m The invoker of the method returned from the class
+    */
+  public void evaluateNode(Node functionNode, Invoker m) {
     try {
-      Object[] params = new Object[functionNode.getChildren().size()];
       ArrayList<Node> nodeArgs = functionNode.getChildren();
 
+      switch(m.getShape()) {
+        case Invoker.INT_INT:
+          int intResult = m.invokeInt(nodeArgs.get(0).getInt(), nodeArgs.get(1).getInt());
+          functionNode.removeChildren();
+          functionNode.setInt(intResult);
+          return;
+        case Invoker.FLOAT_FLOAT:
+          float floatResult = m.invokeFloat(nodeArgs.get(0).getFloat(), nodeArgs.get(1).getFloat());
+          functionNode.removeChildren();
+          functionNode.setFloat(floatResult);
+          return;
+      }
+
+      Object[] params = new Object[nodeArgs.size()];
       for (int i=0; i<nodeArgs.size(); i++) {
-        String type = nodeArgs.get(i).getType();
+        Node arg = nodeArgs.get(i);
 
-        switch(type) {
-          case "int":
-            params[i] = Integer.valueOf(nodeArgs.get(i).getData());
+        switch(arg.getTag()) {
+          case INT:
+            params[i] = Integer.valueOf(arg.getInt());
             break;
-          case "float":
-            params[i] = Float.valueOf(nodeArgs.get(i).getData());
+          case FLOAT:
+            params[i] = Float.valueOf(arg.getFloat());
             break;
-          case "String":
-            params[i] = nodeArgs.get(i).getData();
+          case STRING:
+            params[i] = arg.getData();
             break;
         }
       }
 
-      Object res = m.invoke(cls, params);
-      String result = res.toString();
-      String returnType = m.getReturnType().getName();
+      Object res = m.invoke(params);
+      if (res == null) {
+        throw new NullPointerException();
+      }
 
-      switch(returnType) {
-        case "java.lang.Integer":
-          returnType = "Integer";
-          break;
-        case "java.lang.Float":
-          returnType = "Float";
+      functionNode.removeChildren();
+      switch(m.getReturnTag()) {
+        case INT:
+          functionNode.setInt((Integer) res);
           break;
-        case "java.lang.String":
-          returnType = "String";
+        case FLOAT:
+          functionNode.setFloat((Float) res);
           break;
+        default:
+          functionNode.setValue(res, m.getReturnTag(), m.getReturnType());
       }
-
-    functionNode.removeChildren();
-    functionNode.setType(returnType);
-    functionNode.setData(result);
     }
-    catch(Exception e){throw new ArithmeticException();}
+    catch(Throwable e){throw new ArithmeticException();}
   }
 
   /**
@@ -150,7 +172,7 @@ public class Evaluator {
     ArrayList<Node> values = new ArrayList<Node>();
     for (int i=0; i<node.getChildren().size(); i++) {
       Node currentNode = node.getChild(i);
-      if (!currentNode.getType().equals("func")) {
+      if (currentNode.getTag() != NodeType.FUNC) {
           values.add(currentNode);
       }
     }
@@ -169,7 +191,7 @@ public class Evaluator {
     ArrayList<Node> funcs = new ArrayList<Node>();
     for (int i=0; i<node.getChildren().size(); i++) {
       Node currentNode = node.getChild(i);
-      if (currentNode.getType().equals("func")) {
+      if (currentNode.getTag() == NodeType.FUNC) {
           funcs.add(currentNode);
           funcs.addAll(getFunctions(currentNode));
       }
@@ -185,7 +207,7 @@ public class Evaluator {
     */
   public boolean isBottom(Node node) {
     for (int i=0; i<node.getChildren().size(); i++) {
-      if (node.getChild(i).getType().equals("func")) {
+      if (node.getChild(i).getTag() == NodeType.FUNC) {
         return false;
       }
     }
@@ -0,0 +1,116 @@
+package methods;
+
+import java.util.*;
+
+/**
+ * ExpressionCache class
+ *
+ * Bounded LRU cache of compiled expressions, keyed by the exact expression text. Lines that only differ in
+ * indentation are compiled apart, as the Watchdog and error messages of a compiled call carry its offset.
+ * The cache belongs to one dispatch index and empties itself when it is used with another one.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ExpressionCache {
+  public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+  private int maxEntries;
+  private MethodIndex index;
+  private long hits;
+  private long misses;
+  private LinkedHashMap<String, CompiledExpression> entries;
+
+  /**
+    * ExpressionCache default constructor
+    *
+    */
+  public ExpressionCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+    * ExpressionCache constructor
+    *
+    * @param maxEntries The largest number of expressions kept
+    */
+  public ExpressionCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<String, CompiledExpression>(64, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+        return size() > ExpressionCache.this.maxEntries;
+      }
+    };
+  }
+
+  /**
+    * Returns the compiled form of an expression
+    *
+    * @param exp The entered expression
+    * @param index The dispatch index the expression is evaluated against
+    * @return The compiled expression, null if it is not cached
+    */
+  public synchronized CompiledExpression get(String exp, MethodIndex index) {
+    if (index != this.index) {
+      invalidate();
+      this.index = index;
+    }
+    CompiledExpression expression = this.entries.get(exp);
+    if (expression == null) {
+      this.misses++;
+    }
+    else {
+      this.hits++;
+    }
+    return expression;
+  }
+
+  /**
+    * Caches the compiled form of an expression
+    *
+    * @param exp The entered expression
+    * @param index The dispatch index the expression was compiled against
+    * @param expression The compiled expression
+    */
+  public synchronized void put(String exp, MethodIndex index, CompiledExpression expression) {
+    if (index != this.index) {
+      invalidate();
+      this.index = index;
+    }
+    this.entries.put(exp, expression);
+  }
+
+  /**
+    * Removes every cached expression, e.g. after the loaded class has changed
+    *
+    */
+  public synchronized void invalidate() {
+    this.entries.clear();
+  }
+
+  /**
+    * Returns the number of cached expressions
+    *
+    * @return The number of entries
+    */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+    * Returns the number of expressions found in the cache
+    *
+    * @return The number of hits
+    */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+    * Returns the number of expressions not found in the cache
+    *
+    * @return The number of misses
+    */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+}
@@ -0,0 +1,708 @@
+package methods;
+
+import java.util.*;
+import java.lang.invoke.*;
+import java.text.*;
+
+/**
+ * ExpressionCompiler class
+ *
+ * Turns a parse tree into a single composed MethodHandle that calls the resolved methods with their static types
+ *
+ * Expressions with variables ($x) are prepared instead of compiled: every handle then takes the frame, an Object[]
+ * holding the values of the variables, as its only argument, and variables are read from it by position.
+ *
+ * A call the FlatTree shares between several places is evaluated once per evaluation: its first place stores the
+ * value in a slot of the frame after the variables, and the later places read it from there. An expression without
+ * variables gets a frame of its own when it has such a call that could not be folded.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ExpressionCompiler {
+  // Composed handles call each other once per level, so deeper expressions are left to the FlatEvaluator
+  public static final int MAX_DEPTH = 1000;
+
+  private static final MethodHandle FAIL;
+  private static final MethodHandle NON_NULL;
+  private static final MethodHandle MEMO_CALL;
+  private static final MethodHandle EVALUATE_SIBLINGS;
+  private static final MethodHandle CALL_START;
+  private static final MethodHandle CALL_FINISH;
+  private static final MethodHandle VOID_CALL_FINISH;
+  private static final MethodHandle STORE;
+  private static final MethodHandle NEW_FRAME;
+  private static final MethodHandle EXTEND_FRAME;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      FAIL = lookup.findStatic(ExpressionCompiler.class, "fail", MethodType.methodType(Object.class));
+      NON_NULL = lookup.findStatic(ExpressionCompiler.class, "nonNull", MethodType.methodType(Object.class, Object.class));
+      MEMO_CALL = lookup.findStatic(ExpressionCompiler.class, "memoCall", MethodType.methodType(Object.class, MemoCache.class, Invoker.class, Object[].class));
+      EVALUATE_SIBLINGS = lookup.findVirtual(SiblingScheduler.class, "evaluate", MethodType.methodType(Object[].class, MethodHandle[].class, SiblingScheduler.Cost[].class));
+      CALL_START = lookup.findVirtual(Metrics.Timer.class, "start", MethodType.methodType(long.class));
+      CALL_FINISH = lookup.findStatic(ExpressionCompiler.class, "callFinish", MethodType.methodType(Object.class, Metrics.Timer.class, Throwable.class, Object.class, long.class));
+      VOID_CALL_FINISH = lookup.findStatic(ExpressionCompiler.class, "callFinish", MethodType.methodType(void.class, Metrics.Timer.class, Throwable.class, long.class));
+      STORE = lookup.findStatic(ExpressionCompiler.class, "store", MethodType.methodType(Object.class, Object[].class, int.class, Object.class));
+      NEW_FRAME = MethodHandles.arrayConstructor(Object[].class);
+      EXTEND_FRAME = lookup.findStatic(Arrays.class, "copyOf", MethodType.methodType(Object[].class, Object[].class, int.class));
+    }
+    catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private MethodIndex index;
+  private MemoCache memo;
+  private Purity purity = new Purity();
+  private SiblingScheduler siblings;
+  private Metrics metrics;
+  private Watchdog watchdog;
+  private MethodHandle[] sharedHandles = new MethodHandle[0];
+  private Invoker[] sharedCallees = new Invoker[0];
+  private boolean[] sharedFolded = new boolean[0];
+  private int[] references = new int[0];
+  private String[] variables;
+  private Class[] variableTypes;
+  // The length of the frame, and whether a compiled expression needs one for its shared calls
+  private int frameSize;
+  private boolean needsFrame;
+  private Diagnostic diagnostic;
+
+  /**
+    * ExpressionCompiler constructor
+    *
+    * @param index The dispatch index of the class containing all concrete methods
+    */
+  public ExpressionCompiler(MethodIndex index) {
+    this.index = index;
+  }
+
+  /**
+    * Sets the dispatch index methods are resolved with. Expressions compiled afterwards use it.
+    *
+    * @param index The dispatch index of the classes containing all concrete methods
+    */
+  public void setIndex(MethodIndex index) {
+    this.index = index;
+  }
+
+  /**
+    * Sets the cache used for the results of pure methods. Expressions compiled afterwards consult it.
+    *
+    * @param memo The cache, or null to call every method
+    */
+  public void setMemoCache(MemoCache memo) {
+    this.memo = memo;
+  }
+
+  /**
+    * Sets the rules deciding which calls with literal arguments are folded into literals when compiled
+    *
+    * @param purity The purity rules
+    */
+  public void setPurity(Purity purity) {
+    this.purity = purity;
+  }
+
+  /**
+    * Sets the metrics that count and time the method calls of expressions compiled afterwards
+    *
+    * @param metrics The metrics, or null to record nothing
+    */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+    * Sets the watchdog that bounds how long the method calls of expressions compiled afterwards may take
+    *
+    * @param watchdog The watchdog, or null to let every call run until it returns
+    */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+    * Sets the scheduler that evaluates the function arguments of a call concurrently. Expressions compiled
+    * afterwards use it.
+    *
+    * @param siblings The scheduler, or null to evaluate every argument in order on the calling thread
+    */
+  public void setSiblingScheduler(SiblingScheduler siblings) {
+    this.siblings = siblings;
+  }
+
+  /**
+    * Returns the error found by the last compilation that failed
+    *
+    * @return The diagnostic of the function without a matching method, of the unbound variable or of the call
+    * nested too deeply
+    */
+  public Diagnostic getDiagnostic() {
+    return this.diagnostic;
+  }
+
+  /**
+    * Compiles the parse tree of an expression
+    *
+    * All methods are resolved before anything is called, in the same order as the Evaluator resolves them.
+    * Nothing is printed when a method cannot be resolved. Calls of pure methods whose arguments are all literals
+    * are then evaluated once and replaced with their result; calls that fail are left to fail when evaluated.
+    *
+    * @param tree The parse tree of the expression
+    * @param exp The entered expression
+    * @return The compiled expression
+    * @throws ParseException When a method entered does not match any methods in the class
+    */
+  public CompiledExpression compile(ParseTree tree, String exp) throws ParseException {
+    Invoker[] callee = new Invoker[1];
+    MethodHandle handle = compileCall(tree.getRoot(), callee, new boolean[1]);
+    if (handle == null) {
+      throw this.diagnostic.toException();
+    }
+    return new CompiledExpression(handle.asType(MethodType.methodType(Object.class)), callee[0].getReturnType(), exp);
+  }
+
+  /**
+    * Compiles a flat parse tree of an expression
+    *
+    * @param tree The flat parse tree of the expression, which is left unchanged
+    * @param root The id of the root node
+    * @param exp The entered expression
+    * @return The compiled expression
+    * @throws ParseException When a method entered does not match any methods in the class
+    */
+  public CompiledExpression compile(FlatTree tree, int root, String exp) throws ParseException {
+    CompiledExpression expression = tryCompile(tree, root, exp);
+    if (expression == null) {
+      throw this.diagnostic.toException();
+    }
+    return expression;
+  }
+
+  /**
+    * Compiles a flat parse tree of an expression, without throwing when a method cannot be resolved
+    *
+    * @param tree The flat parse tree of the expression, which is left unchanged
+    * @param root The id of the root node
+    * @param exp The entered expression
+    * @return The compiled expression, or null if a method entered does not match any methods in the class or the
+    * expression is nested more than MAX_DEPTH calls deep (see getDiagnostic)
+    */
+  public CompiledExpression tryCompile(FlatTree tree, int root, String exp) {
+    Invoker[] callee = new Invoker[1];
+    MethodHandle handle = compileRoot(tree, root, callee);
+    if (handle != null && this.needsFrame) {
+      // Compiled again with a frame of no variables, which every evaluation allocates
+      this.variables = new String[0];
+      this.variableTypes = new Class[0];
+      try {
+        handle = compileRoot(tree, root, callee);
+        if (handle != null) {
+          handle = MethodHandles.collectArguments(handle, 0, MethodHandles.insertArguments(NEW_FRAME, 0, this.frameSize));
+        }
+      }
+      finally {
+        this.variables = null;
+        this.variableTypes = null;
+      }
+    }
+    if (handle == null) {
+      return null;
+    }
+    return new CompiledExpression(handle.asType(MethodType.methodType(Object.class)), callee[0].getReturnType(), exp);
+  }
+
+  /**
+    * Prepares a flat parse tree of an expression with variables, without throwing when a method cannot be resolved
+    *
+    * Methods are resolved with the declared types of the variables, and calls that do not depend on a variable
+    * are folded like they are when compiling.
+    *
+    * @param tree The flat parse tree of the expression, which is left unchanged
+    * @param root The id of the root node
+    * @param exp The entered expression
+    * @param names The names of the variables, without their $
+    * @param types The types of the variables: int, float or String
+    * @return The prepared expression, or null if a method entered does not match any methods in the class or a
+    * variable is not declared (see getDiagnostic)
+    */
+  public PreparedExpression tryPrepare(FlatTree tree, int root, String exp, String[] names, Class[] types) {
+    this.variables = names;
+    this.variableTypes = types;
+    try {
+      Invoker[] callee = new Invoker[1];
+      MethodHandle handle = compileRoot(tree, root, callee);
+      if (handle == null) {
+        return null;
+      }
+      if (this.frameSize > names.length) {
+        // The values passed in are copied into a frame with room for the shared calls
+        handle = MethodHandles.filterArguments(handle, 0, MethodHandles.insertArguments(EXTEND_FRAME, 1, this.frameSize));
+      }
+      handle = handle.asType(MethodType.methodType(Object.class, Object[].class));
+      return new PreparedExpression(handle, callee[0].getReturnType(), exp, names, types);
+    }
+    finally {
+      this.variables = null;
+      this.variableTypes = null;
+    }
+  }
+
+  /**
+    * Compiles the root function node of a flat tree, forgetting the calls shared by earlier expressions
+    *
+    * @param tree The flat parse tree
+    * @param root The id of the root node
+    * @param callee Receives the invoker of the method called
+    * @return The handle performing the call, null when a method entered does not match any methods in the class
+    */
+  private MethodHandle compileRoot(FlatTree tree, int root, Invoker[] callee) {
+    if (this.sharedHandles.length < tree.size()) {
+      this.sharedHandles = new MethodHandle[tree.size()];
+      this.sharedCallees = new Invoker[tree.size()];
+      this.sharedFolded = new boolean[tree.size()];
+      this.references = new int[tree.size()];
+    }
+    Arrays.fill(this.sharedHandles, null);
+    Arrays.fill(this.sharedCallees, null);
+    countReferences(tree, root);
+    this.frameSize = this.variables == null ? 0 : this.variables.length;
+    this.needsFrame = false;
+    return compileCall(tree, root, callee, new boolean[1], 1);
+  }
+
+  /**
+    * Counts the places each call below a function node is evaluated at, following shared calls only once
+    *
+    * @param tree The flat parse tree
+    * @param root The id of the function node
+    */
+  private void countReferences(FlatTree tree, int root) {
+    Arrays.fill(this.references, 0);
+    int[] stack = new int[16];
+    int depth = 0;
+    stack[depth++] = root;
+    while (depth > 0) {
+      int node = stack[--depth];
+      for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+        if (tree.getTag(child) == NodeType.FUNC && this.references[tree.getShared(child)]++ == 0) {
+          if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, 2*depth);
+          }
+          stack[depth++] = child;
+        }
+      }
+    }
+  }
+
+  /**
+    * Compiles a function node and its children
+    *
+    * @param node The function node
+    * @param callee Receives the invoker of the method called
+    * @param folded Receives whether or not the call was folded into a constant
+    * @return A handle taking no arguments that performs the call, null when a method entered does not match
+    * any methods in the class
+    */
+  private MethodHandle compileCall(Node node, Invoker[] callee, boolean[] folded) {
+    ArrayList<Node> children = node.getChildren();
+    MethodHandle[] args = new MethodHandle[children.size()];
+    String[] types = new String[children.size()];
+    Invoker[] callees = new Invoker[children.size()];
+    boolean[] constants = new boolean[children.size()];
+
+    for (int i = 0; i < args.length; i++) {
+      Node child = children.get(i);
+      if (isCall(child)) {
+        Invoker[] childCallee = new Invoker[1];
+        boolean[] childFolded = new boolean[1];
+        args[i] = compileCall(child, childCallee, childFolded);
+        if (args[i] == null) {
+          return null;
+        }
+        callees[i] = childCallee[0];
+        constants[i] = childFolded[0];
+        types[i] = callees[i].getReturnType();
+      }
+      else if (child.getTag() == NodeType.VARIABLE) {
+        // Only flat trees are prepared
+        this.diagnostic = Diagnostic.unbound(child.getData(), child.getNodeIndex());
+        return null;
+      }
+      else {
+        args[i] = literal(child.getTag(), child.getData());
+        constants[i] = true;
+        types[i] = child.getType();
+      }
+    }
+
+    return bind(node.getData(), node.getNodeIndex(), args, types, callees, constants, callee, folded);
+  }
+
+  /**
+    * Compiles a function node of a flat tree and its children
+    *
+    * @param tree The flat parse tree
+    * @param node The id of the function node
+    * @param callee Receives the invoker of the method called
+    * @param folded Receives whether or not the call was folded into a constant
+    * @param depth The number of calls enclosing the node, including itself
+    * @return A handle taking no arguments, or the frame when preparing, that performs the call, null when a
+    * method entered does not match any methods in the class, a variable is not declared or the node is nested
+    * too deeply
+    */
+  private MethodHandle compileCall(FlatTree tree, int node, Invoker[] callee, boolean[] folded, int depth) {
+    // A call shared with an earlier one is compiled and evaluated once
+    int target = tree.getShared(node);
+    if (this.sharedHandles[target] != null) {
+      callee[0] = this.sharedCallees[target];
+      folded[0] = this.sharedFolded[target];
+      return this.sharedHandles[target];
+    }
+    if (depth > MAX_DEPTH) {
+      this.diagnostic = Diagnostic.tooDeep(tree.getOffset(node));
+      return null;
+    }
+
+    MethodHandle[] args = new MethodHandle[tree.getChildCount(node)];
+    String[] types = new String[args.length];
+    Invoker[] callees = new Invoker[args.length];
+    boolean[] constants = new boolean[args.length];
+
+    int i = 0;
+    for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+      if (tree.getTag(child) == NodeType.FUNC) {
+        Invoker[] childCallee = new Invoker[1];
+        boolean[] childFolded = new boolean[1];
+        args[i] = compileCall(tree, child, childCallee, childFolded, depth+1);
+        if (args[i] == null) {
+          return null;
+        }
+        callees[i] = childCallee[0];
+        constants[i] = childFolded[0];
+        types[i] = callees[i].getReturnType();
+      }
+      else if (tree.getTag(child) == NodeType.VARIABLE) {
+        args[i] = variable(tree.getText(child), tree.getOffset(child));
+        if (args[i] == null) {
+          return null;
+        }
+        types[i] = Invoker.nodeType(args[i].type().returnType());
+      }
+      else {
+        args[i] = framed(literal(tree.getTag(child), tree.getText(child)));
+        constants[i] = true;
+        types[i] = tree.getType(child);
+      }
+      i++;
+    }
+
+    MethodHandle call = bind(tree.getText(node), tree.getOffset(node), args, types, callees, constants, callee, folded);
+    if (call == null) {
+      return null;
+    }
+    this.sharedHandles[target] = call;
+    if (!folded[0] && this.references[target] > 1) {
+      if (this.variables == null) {
+        this.needsFrame = true;
+      }
+      else {
+        int slot = this.frameSize++;
+        MethodType type = call.type();
+        MethodHandle element = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, slot);
+        this.sharedHandles[target] = element.asType(type);
+        // The frame is passed to the call and to the store
+        MethodHandle store = MethodHandles.insertArguments(STORE, 1, slot).asType(type.appendParameterTypes(type.returnType()));
+        call = MethodHandles.permuteArguments(MethodHandles.collectArguments(store, 1, call), type, 0, 0);
+      }
+    }
+    this.sharedCallees[target] = callee[0];
+    this.sharedFolded[target] = folded[0];
+    return call;
+  }
+
+  /**
+    * Resolves a function and binds the handles of its arguments to its method
+    *
+    * @param method The name of the function
+    * @param offset The offset of the function in the expression
+    * @param args The handles producing the arguments
+    * @param types The node types of the arguments
+    * @param callees The invokers called by the function arguments, null for the other arguments
+    * @param constants Whether or not each argument is a literal or a folded call
+    * @param callee Receives the invoker of the method called
+    * @param folded Receives whether or not the call was folded into a constant
+    * @return A handle taking no arguments, or the frame when preparing, that performs the call, null when the
+    * function does not match any methods in the class
+    */
+  private MethodHandle bind(String method, int offset, MethodHandle[] args, String[] types, Invoker[] callees, boolean[] constants, Invoker[] callee, boolean[] folded) {
+    Invoker invoker = this.index.resolve(method, types);
+    if (invoker == null) {
+      this.diagnostic = Diagnostic.noMatch(method, types, offset);
+      return null;
+    }
+
+    callee[0] = invoker;
+    Class[] paramTypes = invoker.getMethod().getParameterTypes();
+    Class returnType = invoker.getMethod().getReturnType();
+    MethodHandle call = invoker.getHandle();
+
+    boolean fold = call != null && this.purity.isPure(invoker);
+    int calls = 0;
+    for (int i = 0; i < args.length; i++) {
+      fold &= constants[i];
+      if (callees[i] != null && !constants[i]) {
+        calls++;
+      }
+    }
+
+    if (call == null) {
+      call = MethodHandles.dropArguments(FAIL.asType(MethodType.methodType(returnType == void.class ? Object.class : returnType)), 0, paramTypes);
+    }
+    else if (!fold && this.memo != null && this.memo.isPure(invoker)) {
+      call = MethodHandles.insertArguments(MEMO_CALL, 0, this.memo, invoker).asCollector(Object[].class, paramTypes.length).asType(call.type());
+    }
+    if (invoker.getHandle() != null && this.watchdog != null) {
+      call = this.watchdog.guard(call, method, offset);
+    }
+    if (!fold && this.metrics != null) {
+      call = measured(call, this.metrics.function(invoker));
+    }
+
+    if (this.siblings != null && calls >= 2 && this.variables == null) {
+      // The scheduler evaluates the arguments and the method takes them from the array it returns
+      MethodHandle[] values = new MethodHandle[args.length];
+      SiblingScheduler.Cost[] costs = new SiblingScheduler.Cost[args.length];
+      for (int i = 0; i < args.length; i++) {
+        values[i] = argument(args[i], types[i], paramTypes[i]).asType(MethodType.methodType(Object.class));
+        costs[i] = callees[i] == null || constants[i] ? null : this.siblings.cost(callees[i]);
+      }
+      call = MethodHandles.collectArguments(call.asSpreader(Object[].class, args.length), 0, MethodHandles.insertArguments(EVALUATE_SIBLINGS, 0, this.siblings, values, costs));
+    }
+    else {
+      // Arguments are collected last to first so they are evaluated first to last
+      for (int i = args.length-1; i >= 0; i--) {
+        call = MethodHandles.collectArguments(call, i, argument(args[i], types[i], paramTypes[i]));
+      }
+      if (this.variables != null) {
+        // Every argument takes the frame, which is passed once
+        call = MethodHandles.permuteArguments(call, MethodType.methodType(call.type().returnType(), Object[].class), new int[args.length]);
+      }
+    }
+
+    if (returnType == void.class) {
+      call = MethodHandles.filterReturnValue(call, FAIL);
+    }
+    else if (!returnType.isPrimitive()) {
+      call = MethodHandles.filterReturnValue(call, NON_NULL.asType(MethodType.methodType(returnType, returnType)));
+    }
+
+    if (fold) {
+      try {
+        // Folded calls do not depend on a variable, so they are called without a frame
+        Object value = this.variables == null ? call.invoke() : call.invoke((Object[]) null);
+        folded[0] = true;
+        return framed(MethodHandles.constant(call.type().returnType(), value));
+      }
+      catch (Throwable e) {
+        // The call fails again, and is reported and counted, when the expression is evaluated
+        if (this.metrics != null) {
+          call = measured(call, this.metrics.function(invoker));
+        }
+      }
+    }
+    return call;
+  }
+
+  /**
+    * Counts and times the calls made through a handle, leaving out the evaluation of their arguments
+    *
+    * @param call The handle calling the method
+    * @param f The counters of the method
+    * @return A handle with the same type
+    */
+  private static MethodHandle measured(MethodHandle call, Metrics.Timer f) {
+    Class returnType = call.type().returnType();
+    MethodHandle finish;
+    if (returnType == void.class) {
+      finish = VOID_CALL_FINISH.bindTo(f);
+    }
+    else {
+      finish = CALL_FINISH.bindTo(f).asType(MethodType.methodType(returnType, Throwable.class, returnType, long.class));
+    }
+    // The start time is passed to the cleanup as an extra leading argument
+    MethodHandle timed = MethodHandles.tryFinally(MethodHandles.dropArguments(call, 0, long.class), finish);
+    return MethodHandles.foldArguments(timed, CALL_START.bindTo(f));
+  }
+
+  /**
+    * Adapts the value of an argument to the parameter type of the method
+    *
+    * Like the Evaluator, only int, float and String values are passed on. Any other value is replaced with null.
+    *
+    * @param arg The handle producing the argument
+    * @param type The node type of the argument
+    * @param paramType The parameter type of the method
+    * @return A handle taking the same arguments that produces the parameter value
+    */
+  private static MethodHandle argument(MethodHandle arg, String type, Class paramType) {
+    NodeType tag = NodeType.of(type);
+    if (tag == NodeType.INT || tag == NodeType.FLOAT || tag == NodeType.STRING) {
+      return arg.asType(arg.type().changeReturnType(paramType));
+    }
+
+    MethodHandle replacement;
+    if (paramType.isPrimitive()) {
+      replacement = FAIL.asType(MethodType.methodType(paramType));
+    }
+    else {
+      replacement = MethodHandles.constant(paramType, null);
+    }
+    return MethodHandles.filterReturnValue(arg, MethodHandles.dropArguments(replacement, 0, arg.type().returnType()));
+  }
+
+  /**
+    * Compiles a value node
+    *
+    * Values that cannot be parsed fail when the expression is evaluated, like they do in the Evaluator
+    *
+    * @param tag The type tag of the value
+    * @param data The text of the value
+    * @return A handle taking no arguments that produces the value
+    */
+  private static MethodHandle literal(NodeType tag, String data) {
+    try {
+      switch(tag) {
+        case INT:
+          return MethodHandles.constant(int.class, Integer.parseInt(data));
+        case FLOAT:
+          return MethodHandles.constant(float.class, Float.parseFloat(data));
+        default:
+          return MethodHandles.constant(String.class, data);
+      }
+    }
+    catch (NumberFormatException e) {
+      return FAIL.asType(MethodType.methodType(tag == NodeType.INT ? int.class : float.class));
+    }
+  }
+
+  /**
+    * Compiles a variable node, which reads its value from the frame
+    *
+    * @param name The text of the variable, including its $
+    * @param offset The offset of the variable in the expression
+    * @return A handle taking the frame that produces the value, null when the variable is not declared
+    */
+  private MethodHandle variable(String name, int offset) {
+    int position = this.variables == null ? -1 : Arrays.asList(this.variables).indexOf(name.substring(1));
+    if (position < 0) {
+      this.diagnostic = Diagnostic.unbound(name, offset);
+      return null;
+    }
+    MethodHandle element = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, position);
+    return element.asType(MethodType.methodType(this.variableTypes[position], Object[].class));
+  }
+
+  /**
+    * Makes a handle taking no arguments take the frame when preparing
+    *
+    * @param handle The handle
+    * @return The handle, ignoring the frame when preparing
+    */
+  private MethodHandle framed(MethodHandle handle) {
+    return this.variables == null ? handle : MethodHandles.dropArguments(handle, 0, Object[].class);
+  }
+
+  /**
+    * Determines if a node is a function call
+    *
+    * @param node The node to be checked
+    * @return Whether or not the node is a function call
+    */
+  static boolean isCall(Node node) {
+    return node.getTag() == null || node.getTag() == NodeType.FUNC;
+  }
+
+  /**
+    * Fails a call the same way a failed reflective call does
+    *
+    * @return Never returns
+    */
+  private static Object fail() {
+    throw new ArithmeticException();
+  }
+
+  /**
+    * Fails on null results, which cannot be printed
+    *
+    * @param value The result of a call
+    * @return The result of the call
+    */
+  private static Object nonNull(Object value) {
+    if (value == null) {
+      throw new ArithmeticException();
+    }
+    return value;
+  }
+
+  /**
+    * Records the end of a measured call
+    *
+    * @param f The counters of the method
+    * @param e What the call threw, null if it returned
+    * @param result The result of the call
+    * @param start The start time returned by Metrics.Timer.start()
+    * @return The result of the call
+    */
+  private static Object callFinish(Metrics.Timer f, Throwable e, Object result, long start) {
+    f.finish(start, e != null);
+    return result;
+  }
+
+  /**
+    * Records the end of a measured call of a void method
+    *
+    * @param f The counters of the method
+    * @param e What the call threw, null if it returned
+    * @param start The start time returned by Metrics.Timer.start()
+    */
+  private static void callFinish(Metrics.Timer f, Throwable e, long start) {
+    f.finish(start, e != null);
+  }
+
+  /**
+    * Stores the value of a shared call in the frame, for the later places of the call to read
+    *
+    * @param frame The frame
+    * @param slot The position of the value in the frame
+    * @param value The value of the call
+    * @return The value of the call
+    */
+  private static Object store(Object[] frame, int slot, Object value) {
+    frame[slot] = value;
+    return value;
+  }
+
+  /**
+    * Calls a pure method through the memo cache
+    *
+    * @param memo The cache holding earlier results
+    * @param m The invoker of the method
+    * @param args The arguments of the call
+    * @return The result of the call
+    * @throws Throwable Anything thrown by the method
+    */
+  private static Object memoCall(MemoCache memo, Invoker m, Object[] args) throws Throwable {
+    Object result = memo.get(m, args);
+    if (result == null) {
+      result = m.invoke(args);
+      if (result == null) {
+        throw new ArithmeticException();
+      }
+      memo.put(m, args, result);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,340 @@
+package methods;
+
+import java.io.PrintStream;
+import java.text.*;
+
+/**
+ * ExpressionParser class
+ *
+ * Single pass tokenizer and parser for expressions. Tokens are collected in a reusable character buffer and
+ * handed to a TreeBuilder, so parsing does not box characters or rebuild token strings.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ExpressionParser {
+  private char[] buffer = new char[64];
+  private int length;
+  private Diagnostic diagnostic;
+  private PrintStream out = System.out;
+
+  /**
+    * Sets the stream errors are printed to
+    *
+    * @param out The stream, sysout by default
+    */
+  public void setOut(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+    * Parses a string and passes the nodes it contains to a builder, printing the error found if any
+    *
+    * @param exp The string to be parsed
+    * @param builder The builder receiving the nodes
+    * @return The id of the root node
+    * @throws ParseException if an error occurs in parsing
+    */
+  public int parse(String exp, TreeBuilder builder) throws ParseException {
+    int root = tryParse(exp, builder);
+    if (root < 0) {
+      this.diagnostic.print(this.out, exp);
+      throw this.diagnostic.toException();
+    }
+    return root;
+  }
+
+  /**
+    * Returns the error found by the last parse that failed
+    *
+    * @return The diagnostic of the error
+    */
+  public Diagnostic getDiagnostic() {
+    return this.diagnostic;
+  }
+
+  /**
+    * Parses a string and passes the nodes it contains to a builder, without printing or throwing anything
+    *
+    * @param exp The string to be parsed
+    * @param builder The builder receiving the nodes
+    * @return The id of the root node, or -1 if an error was found (see getDiagnostic)
+    */
+  public int tryParse(String exp, TreeBuilder builder) {
+    char[] chars = exp.toCharArray();
+    int root = builder.root();
+    int currentNode = root;
+    int bracketCount = 0;
+    boolean stringFlag = false;
+    int stringIndex = -1;
+    boolean functionFlag = false;
+    int functionIndex = -1;
+    boolean rootFlag = false;
+    boolean numFlag = false;
+    boolean varFlag = false;
+    int floatCount = 0;
+    this.length = 0;
+
+    int index = 0;
+    for (; index < chars.length; index++) {
+      char i = chars[index];
+
+      if (i == '(') {
+        if (stringFlag && !functionFlag) {
+          append(i);
+        }
+        else if (varFlag) { //Left bracket cannot follow a variable
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index-this.length));
+        }
+        else if (bracketCount == 0 && rootFlag) { //Left bracket is found after expression
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+        else if (functionFlag) { //Left bracket cannot be found in function name
+          return fail(Diagnostic.token(Diagnostic.Kind.BRACKET, index));
+        }
+        else {
+          functionFlag = true;
+          functionIndex = index;
+          bracketCount++;
+        }
+      }
+
+      else if (i == ')') {
+        if (bracketCount == 0 && rootFlag) { //Right bracket found after expression is finished
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+        if (!stringFlag) {
+          bracketCount--;
+        }
+
+        if (numFlag) {
+          numFlag = false;
+          floatCount = 0;
+          builder.addChild(currentNode, number(builder, currentNode, index));
+          if (!rootFlag) {
+            root = currentNode;
+            rootFlag = true;
+          }
+          this.length = 0;
+        }
+        else if (varFlag) {
+          if (this.length == 1) { //Variable without a name
+            return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index-1));
+          }
+          varFlag = false;
+          builder.addChild(currentNode, builder.node(currentNode, NodeType.VARIABLE, this.buffer, this.length, index-this.length));
+          if (!rootFlag) {
+            root = currentNode;
+            rootFlag = true;
+          }
+          this.length = 0;
+        }
+
+        if (functionFlag && stringFlag) {
+          functionFlag = false;
+          stringFlag = false;
+          bracketCount--;
+          int n = builder.node(currentNode, NodeType.FUNC, this.buffer, this.length, index-this.length);
+          if (!rootFlag) {
+            root = n;
+            rootFlag = true;
+          }
+          else {
+            builder.addChild(currentNode, n);
+          }
+          builder.close(n);
+          this.length = 0;
+        }
+        else if (stringFlag && !functionFlag) {
+          append(i);
+          continue;
+        }
+
+        if (currentNode == root) {
+          if (bracketCount < 0) { //No left bracket
+            return fail(Diagnostic.token(Diagnostic.Kind.BRACKET, index));
+          }
+          continue;
+        }
+        builder.close(currentNode);
+        currentNode = builder.parent(currentNode);
+      }
+
+      // If element is a quotation mark
+      else if (i == '\"') {
+        if (bracketCount == 0 && rootFlag) { //Quotation mark is found after expression
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+        if (functionFlag) { //No quotation marks in function
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+
+        if (stringFlag) {
+          stringFlag = false;
+          stringIndex = index;
+          builder.addChild(currentNode, builder.node(currentNode, NodeType.STRING, this.buffer, this.length, index-this.length));
+          if (!rootFlag) {
+            root = currentNode;
+            rootFlag = true;
+          }
+          this.length = 0;
+        }
+        else {
+          stringFlag = true;
+          stringIndex = index;
+        }
+      }
+
+      // If element is neither whitespace or a quotation
+      else if (i != ' ' && i != '\t') {
+        if (bracketCount == 0 && rootFlag) { //Something appeared after the first function is evaluated
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+
+        if (functionFlag) {
+          // A period may separate a class name from the method name, as in (Commands1.reverse "abc")
+          if (!Character.isLetter(i) && i != '_' && !Character.isDigit(i) && (i != '.' || !stringFlag)) { //Incorrect symbol for function name
+            return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+          }
+          stringFlag = true;
+          stringIndex = index;
+          append(i);
+        }
+        else if (stringFlag) {
+          append(i);
+        }
+        else if (varFlag) {
+          if (!Character.isLetter(i) && i != '_' && (!Character.isDigit(i) || this.length == 1)) { //Incorrect symbol for variable name
+            return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+          }
+          append(i);
+        }
+        else if (i == '$' && !numFlag) { // Placeholder of a prepared expression, e.g. $x
+          varFlag = true;
+          append(i);
+        }
+        else if (i == '-' && !numFlag) {
+          numFlag = true;
+          append(i);
+        }
+        else if (i == '-') {
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+        else if (Character.isDigit(i)) {
+          numFlag = true;
+          append(i);
+        }
+        else if (i == '.' && !numFlag) { // Illegal float value entry
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+        else if (i == '.') {
+          floatCount++;
+          if (floatCount > 1) { //Need to have zero or one periods
+            return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+          }
+          append(i);
+        }
+        else { //Catch-all for unexpected characters
+          return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index));
+        }
+      }
+
+      // If element is whitespace
+      else {
+        if (functionFlag && stringFlag) {
+          functionFlag = false;
+          stringFlag = false;
+          stringIndex = -1;
+          int n = builder.node(currentNode, NodeType.FUNC, this.buffer, this.length, index-this.length);
+          builder.addChild(currentNode, n);
+          currentNode = n;
+          if (!rootFlag) {
+            root = currentNode;
+            rootFlag = true;
+          }
+          this.length = 0;
+        }
+        else if (numFlag) {
+          numFlag = false;
+          floatCount = 0;
+          builder.addChild(currentNode, number(builder, currentNode, index));
+          if (!rootFlag) {
+            root = currentNode;
+            rootFlag = true;
+          }
+          this.length = 0;
+        }
+        else if (varFlag) {
+          if (this.length == 1) { //Variable without a name
+            return fail(Diagnostic.token(Diagnostic.Kind.TOKEN, index-1));
+          }
+          varFlag = false;
+          builder.addChild(currentNode, builder.node(currentNode, NodeType.VARIABLE, this.buffer, this.length, index-this.length));
+          if (!rootFlag) {
+            root = currentNode;
+            rootFlag = true;
+          }
+          this.length = 0;
+        }
+        else if (stringFlag) {
+          append(i);
+        }
+      }
+
+      if (bracketCount < 0) { //missing left bracket
+        return fail(Diagnostic.unopened(index));
+      }
+    }
+
+    if (stringFlag) { //missing end quotation mark
+      return fail(Diagnostic.endOfInput(stringIndex, index));
+    }
+    else if (bracketCount > 0) { //missing end bracket
+      return fail(Diagnostic.endOfInput(functionIndex, index));
+    }
+    return root;
+  }
+
+  /**
+    * Creates an int or float node from the buffered token
+    *
+    * @param builder The builder receiving the nodes
+    * @param parent The id of the parent node
+    * @param index The offset just past the token
+    * @return The id of the new node
+    */
+  private int number(TreeBuilder builder, int parent, int index) {
+    NodeType tag = NodeType.INT;
+    for (int j = 0; j < this.length; j++) {
+      if (this.buffer[j] == '.') {
+        tag = NodeType.FLOAT;
+        break;
+      }
+    }
+    return builder.node(parent, tag, this.buffer, this.length, index-this.length);
+  }
+
+  /**
+    * Adds a character to the token buffer
+    *
+    * @param c The character to be added
+    */
+  private void append(char c) {
+    if (this.length == this.buffer.length) {
+      char[] grown = new char[this.buffer.length*2];
+      System.arraycopy(this.buffer, 0, grown, 0, this.length);
+      this.buffer = grown;
+    }
+    this.buffer[this.length++] = c;
+  }
+
+  /**
+    * Records the error that ended a parse
+    *
+    * @param diagnostic The diagnostic of the error
+    * @return -1
+    */
+  private int fail(Diagnostic diagnostic) {
+    this.diagnostic = diagnostic;
+    return -1;
+  }
+}
@@ -0,0 +1,146 @@
+package methods;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * ExpressionServer class
+ *
+ * Answers newline-delimited lines sent over a local socket with the output the REPL prints for them
+ *
+ * The jar is loaded once and every connection is served by an Interpreter of its own on a thread of its own. All
+ * connections share the dispatch index of the classes. A connection ends when the client closes it or sends "q".
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ExpressionServer implements Closeable {
+  private ProcessJar jar;
+  private Class[] classes;
+  private ServerSocketChannel server;
+  private Path socketFile;
+  private JarReloader reloader;
+  private Watchdog watchdog;
+  private ExecutorService connections;
+
+  /**
+    * ExpressionServer constructor
+    *
+    * @param jar The processor of the jar file
+    * @param classes The classes containing all concrete methods, in order of precedence
+    * @param address A port number to listen on the loopback interface, or the path of a Unix-domain socket
+    * @throws IOException If the socket cannot be bound
+    */
+  public ExpressionServer(ProcessJar jar, Class[] classes, String address) throws IOException {
+    this.jar = jar;
+    this.classes = classes;
+    // The combined index is built before the connections share it
+    this.jar.getIndex(this.classes);
+
+    if (address.matches("[0-9]+")) {
+      this.server = ServerSocketChannel.open(StandardProtocolFamily.INET);
+      this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+    }
+    else {
+      this.socketFile = Paths.get(address);
+      this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      this.server.bind(UnixDomainSocketAddress.of(this.socketFile));
+    }
+
+    this.connections = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "connection");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+    * Makes the connections opened afterwards follow the versions of the jar files published by a reloader
+    *
+    * @param reloader The reloader, or null to keep the classes the server was created with
+    */
+  public void setReloader(JarReloader reloader) {
+    this.reloader = reloader;
+  }
+
+  /**
+    * Bounds how long the expressions of the connections opened afterwards may take, so that a method that never
+    * returns does not hold a connection forever
+    *
+    * @param watchdog The watchdog, or null to let every call run until it returns
+    */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+    * Returns the address the server listens on
+    *
+    * @return The address
+    * @throws IOException If the socket is closed
+    */
+  public SocketAddress getAddress() throws IOException {
+    return this.server.getLocalAddress();
+  }
+
+  /**
+    * Accepts connections until the server is closed
+    *
+    * @throws IOException If a connection cannot be accepted
+    */
+  public void run() throws IOException {
+    try {
+      while (true) {
+        SocketChannel client = this.server.accept();
+        this.connections.execute(() -> serve(client));
+      }
+    }
+    catch (ClosedChannelException e) {
+      // Closed by close()
+    }
+  }
+
+  /**
+    * Stops accepting connections and ends the open ones
+    *
+    * @throws IOException If the socket cannot be closed
+    */
+  public void close() throws IOException {
+    this.connections.shutdownNow();
+    this.server.close();
+    if (this.socketFile != null) {
+      Files.deleteIfExists(this.socketFile);
+    }
+  }
+
+  /**
+    * Answers the lines of one connection
+    *
+    * @param client The connection
+    */
+  private void serve(SocketChannel client) {
+    try (SocketChannel channel = client) {
+      BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+      PrintStream out = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(channel)), false, "UTF-8");
+      JarReloader reloader = this.reloader;
+      Interpreter interpreter = reloader == null ? new Interpreter(this.jar, this.classes) : new Interpreter(reloader);
+      interpreter.setOut(out);
+      interpreter.setWatchdog(this.watchdog);
+
+      String line;
+      while ((line = in.readLine()) != null) {
+        boolean more = interpreter.processLine(line);
+        out.flush();
+        if (!more) {
+          break;
+        }
+      }
+    }
+    catch (IOException e) {
+      // The client went away
+    }
+  }
+}
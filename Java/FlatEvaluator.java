@@ -0,0 +1,283 @@
+package methods;
+
+import java.util.*;
+
+/**
+ * FlatEvaluator class
+ *
+ * Evaluates a FlatTree in place, storing each result in the value slots of its function node
+ *
+ * The tree is walked once, children first, with an explicit stack instead of recursion, so the depth of an
+ * expression is limited only by memory. Each function node is resolved exactly once, when its last child is done.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class FlatEvaluator {
+  private MethodIndex index;
+  private MemoCache memo;
+  private Metrics metrics;
+  private Watchdog watchdog;
+  // Argument arrays reused for every call of the same arity
+  private String[][] types = new String[8][];
+  private Object[][] params = new Object[8][];
+  // The function nodes being evaluated, and the next child of each to visit
+  private int[] stack = new int[16];
+  private int[] cursors = new int[16];
+
+  /**
+    * FlatEvaluator constructor
+    *
+    * @param index The dispatch index of the class containing all concrete methods
+    */
+  public FlatEvaluator(MethodIndex index) {
+    this.index = index;
+  }
+
+  /**
+    * Sets the dispatch index methods are resolved with
+    *
+    * @param index The dispatch index of the classes containing all concrete methods
+    */
+  public void setIndex(MethodIndex index) {
+    this.index = index;
+  }
+
+  /**
+    * Sets the cache used for the results of pure methods
+    *
+    * @param memo The cache, or null to call every method
+    */
+  public void setMemoCache(MemoCache memo) {
+    this.memo = memo;
+  }
+
+  /**
+    * Sets the watchdog that bounds how long method calls may take
+    *
+    * @param watchdog The watchdog, or null to let every call run until it returns
+    */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+    * Sets the metrics that count and time method calls
+    *
+    * @param metrics The metrics, or null to record nothing
+    */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+    * Returns the cache used for the results of pure methods
+    *
+    * @return The cache, null if there is none
+    */
+  public MemoCache getMemoCache() {
+    return this.memo;
+  }
+
+  /**
+    * Evaluates a function node and all function nodes below it, children first and left to right
+    *
+    * @param tree The tree holding the node
+    * @param node The id of the function node
+    * @return Null, or the diagnostic of the first function found without a matching method or with a variable, in
+    * which case the functions after it are not evaluated
+    */
+  public Diagnostic evaluate(FlatTree tree, int node) {
+    int depth = push(0, node, tree.getFirstChild(node));
+    while (depth > 0) {
+      int top = this.stack[depth-1];
+      int child = this.cursors[depth-1];
+      // Shared calls already evaluated hold values, so they are not visited again
+      while (child >= 0 && tree.getTag(child) != NodeType.FUNC) {
+        child = tree.getNextSibling(child);
+      }
+      if (child >= 0) {
+        this.cursors[depth-1] = tree.getNextSibling(child);
+        depth = push(depth, child, tree.getFirstChild(child));
+        continue;
+      }
+
+      depth--;
+      Diagnostic error = evaluateNode(tree, top);
+      if (error != null) {
+        return error;
+      }
+    }
+    return null;
+  }
+
+  /**
+    * Pushes a function node onto the stack of nodes being evaluated
+    *
+    * @param depth The number of nodes on the stack
+    * @param node The id of the function node
+    * @param child The first child of the node
+    * @return The new number of nodes on the stack
+    */
+  private int push(int depth, int node, int child) {
+    if (depth == this.stack.length) {
+      this.stack = Arrays.copyOf(this.stack, 2*depth);
+      this.cursors = Arrays.copyOf(this.cursors, 2*depth);
+    }
+    this.stack[depth] = node;
+    this.cursors[depth] = child;
+    return depth+1;
+  }
+
+  /**
+    * Resolves and calls a function node whose function children all hold values
+    *
+    * @param tree The tree holding the node
+    * @param node The id of the function node
+    * @return Null, or the diagnostic of the node if it has no matching method or has a variable
+    */
+  private Diagnostic evaluateNode(FlatTree tree, int node) {
+    int arity = tree.getChildCount(node);
+    String[] argTypes = scratchTypes(arity);
+    int i = 0;
+    for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+      if (tree.getTag(child) == NodeType.VARIABLE) {
+        // Variables only have values in prepared expressions
+        return Diagnostic.unbound(tree.getText(child), tree.getOffset(child));
+      }
+      argTypes[i++] = tree.getType(child);
+    }
+
+    Invoker m = this.index.resolve(tree.getText(node), argTypes);
+    if (m == null) {
+      return Diagnostic.noMatch(tree.getText(node), argTypes, tree.getOffset(node));
+    }
+
+    invoke(tree, node, m);
+    return null;
+  }
+
+  /**
+    * Calls the method of a function node whose children all hold values, counting and timing the call
+    *
+    * @param tree The tree holding the node
+    * @param node The id of the function node
+    * @param m The invoker of the method returned from the class
+    */
+  private void invoke(FlatTree tree, int node, Invoker m) {
+    if (this.metrics == null) {
+      call(tree, node, m);
+      return;
+    }
+
+    Metrics.Timer f = this.metrics.function(m);
+    long start = f.start();
+    boolean failed = true;
+    try {
+      call(tree, node, m);
+      failed = false;
+    }
+    finally {
+      f.finish(start, failed);
+    }
+  }
+
+  /**
+    * Calls the method of a function node whose children all hold values, without recording metrics
+    *
+    * @param tree The tree holding the node
+    * @param node The id of the function node
+    * @param m The invoker of the method returned from the class
+    */
+  private void call(FlatTree tree, int node, Invoker m) {
+    try {
+      int x = tree.getFirstChild(node);
+      boolean memoize = this.memo != null && this.memo.isPure(m);
+      boolean guarded = this.watchdog != null && this.watchdog.guards(tree.getText(node));
+      switch(memoize || guarded ? Invoker.GENERIC : m.getShape()) {
+        case Invoker.INT_INT:
+          tree.setInt(node, m.invokeInt(tree.getInt(x), tree.getInt(tree.getNextSibling(x))));
+          return;
+        case Invoker.FLOAT_FLOAT:
+          tree.setFloat(node, m.invokeFloat(tree.getFloat(x), tree.getFloat(tree.getNextSibling(x))));
+          return;
+      }
+
+      // Cached arguments are kept by the cache, and guarded calls may outlive this one, so they get an array of
+      // their own
+      Object[] args = memoize || guarded ? new Object[tree.getChildCount(node)] : scratchParams(tree.getChildCount(node));
+      int i = 0;
+      for (int child = x; child >= 0; child = tree.getNextSibling(child)) {
+        switch(tree.getTag(child)) {
+          case INT:
+            args[i] = Integer.valueOf(tree.getInt(child));
+            break;
+          case FLOAT:
+            args[i] = Float.valueOf(tree.getFloat(child));
+            break;
+          case STRING:
+            args[i] = tree.getValue(child);
+            break;
+          default:
+            args[i] = null;
+        }
+        i++;
+      }
+
+      Object res = memoize ? this.memo.get(m, args) : null;
+      if (res == null) {
+        res = guarded ? this.watchdog.invoke(m, args, tree.getText(node), tree.getOffset(node)) : m.invoke(args);
+        if (res == null) {
+          throw new NullPointerException();
+        }
+        if (memoize) {
+          this.memo.put(m, args, res);
+        }
+      }
+
+      switch(m.getReturnTag()) {
+        case INT:
+          tree.setInt(node, (Integer) res);
+          break;
+        case FLOAT:
+          tree.setFloat(node, (Float) res);
+          break;
+        default:
+          tree.setValue(node, res, m.getReturnTag(), m.getReturnType());
+      }
+    }
+    catch(CallTimeoutException e){throw e;}
+    catch(Throwable e){throw new ArithmeticException();}
+  }
+
+  /**
+    * Returns the reusable type array for an arity
+    *
+    * @param arity The number of arguments
+    * @return An array of that length
+    */
+  private String[] scratchTypes(int arity) {
+    if (arity >= this.types.length) {
+      this.types = Arrays.copyOf(this.types, arity+1);
+    }
+    if (this.types[arity] == null) {
+      this.types[arity] = new String[arity];
+    }
+    return this.types[arity];
+  }
+
+  /**
+    * Returns the reusable argument array for an arity
+    *
+    * @param arity The number of arguments
+    * @return An array of that length
+    */
+  private Object[] scratchParams(int arity) {
+    if (arity >= this.params.length) {
+      this.params = Arrays.copyOf(this.params, arity+1);
+    }
+    if (this.params[arity] == null) {
+      this.params[arity] = new Object[arity];
+    }
+    return this.params[arity];
+  }
+}
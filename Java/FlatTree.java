@@ -0,0 +1,562 @@
+package methods;
+
+import java.nio.CharBuffer;
+import java.util.*;
+
+/**
+ * FlatTree class
+ *
+ * Parse tree stored in parallel arrays indexed by node id. The arrays and the text pool are kept between
+ * expressions, so parsing into a reused FlatTree allocates next to nothing once the arrays have grown.
+ *
+ * When sharing is on, the tree is a DAG: a literal, or a closed call of pure methods on such arguments, that
+ * equals an earlier one becomes a reference to it. A reference keeps its own offset and place among its siblings;
+ * everything else, including the value it is evaluated to, belongs to the node it refers to. The children and text
+ * of a shared call are dropped as soon as it is closed. Calls on variables are shared only when the types of the
+ * variables have been declared. Sharing only applies while the Purity marks some method of the index pure, as
+ * nothing else can be shared; equal nodes are found through a table of node ids, compared by tag, text and children.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class FlatTree implements TreeBuilder {
+  private static final char[] ROOT_TEXT = "null".toCharArray();
+
+  private int size;
+  private NodeType[] tags;
+  private String[] types;
+  private int[] parents;
+  private int[] firstChild;
+  private int[] lastChild;
+  private int[] nextSibling;
+  private int[] childCount;
+  private int[] offsets;
+  private int[] textStart;
+  private int[] textLength;
+  private boolean[] hasValue;
+  private int[] intValues;
+  private float[] floatValues;
+  private Object[] values;
+  private char[] text;
+  private int textSize;
+  private CharBuffer textView;
+  private int[] shared;
+  private Invoker[] invokers;
+  private MethodIndex index;
+  private Purity purity;
+  private boolean sharing;
+  private int[] canonical = new int[64];
+  private int canonicalCount;
+  private HashMap<String, String> variableTypes = new HashMap<String, String>();
+
+  /**
+    * FlatTree default constructor
+    *
+    */
+  public FlatTree() {
+    this(64);
+  }
+
+  /**
+    * FlatTree constructor
+    *
+    * @param capacity The number of nodes to make room for
+    */
+  public FlatTree(int capacity) {
+    capacity = Math.max(capacity, 1);
+    this.tags = new NodeType[capacity];
+    this.types = new String[capacity];
+    this.parents = new int[capacity];
+    this.firstChild = new int[capacity];
+    this.lastChild = new int[capacity];
+    this.nextSibling = new int[capacity];
+    this.childCount = new int[capacity];
+    this.offsets = new int[capacity];
+    this.textStart = new int[capacity];
+    this.textLength = new int[capacity];
+    this.hasValue = new boolean[capacity];
+    this.intValues = new int[capacity];
+    this.floatValues = new float[capacity];
+    this.values = new Object[capacity];
+    this.shared = new int[capacity];
+    this.invokers = new Invoker[capacity];
+    this.text = new char[capacity*8];
+    this.textView = CharBuffer.wrap(this.text);
+  }
+
+  /**
+    * Turns the sharing of equal pure subtrees on or off. It applies from the next expression on, as long as some
+    * method of the index is marked pure.
+    *
+    * @param index The dispatch index used to resolve calls, or null to turn sharing off
+    * @param purity The rules deciding which methods are pure
+    */
+  public void setSharing(MethodIndex index, Purity purity) {
+    this.index = index;
+    this.purity = purity;
+  }
+
+  /**
+    * Declares the types of the variables of the next expressions, so that pure calls on them can be shared
+    *
+    * @param names The names of the variables, without their $, or null for none
+    * @param types The types of the variables
+    */
+  public void setVariables(String[] names, Class[] types) {
+    this.variableTypes.clear();
+    for (int i = 0; names != null && i < names.length; i++) {
+      this.variableTypes.put("$" + names[i], Invoker.nodeType(types[i]));
+    }
+  }
+
+  /**
+    * Empties the tree, keeping its arrays for the next expression
+    *
+    */
+  public void reset() {
+    Arrays.fill(this.values, 0, this.size, null);
+    Arrays.fill(this.invokers, 0, this.size, null);
+    if (this.canonicalCount > 0) {
+      Arrays.fill(this.canonical, 0);
+      this.canonicalCount = 0;
+    }
+    this.size = 0;
+    this.textSize = 0;
+  }
+
+  public int root() {
+    reset();
+    this.sharing = this.index != null && this.purity.hasPure(this.index);
+    int id = add(null, -1, -1);
+    appendText(id, ROOT_TEXT, ROOT_TEXT.length);
+    return id;
+  }
+
+  public int node(int parent, NodeType tag, char[] text, int length, int offset) {
+    int id = add(tag, parent, offset);
+    appendText(id, text, length);
+    if (this.sharing && tag != NodeType.FUNC) {
+      share(id);
+    }
+    return id;
+  }
+
+  public void addChild(int parent, int child) {
+    if (parent < 0) {
+      throw new NullPointerException();
+    }
+    if (this.firstChild[parent] < 0) {
+      this.firstChild[parent] = child;
+    }
+    else {
+      this.nextSibling[this.lastChild[parent]] = child;
+    }
+    this.lastChild[parent] = child;
+    this.childCount[parent]++;
+  }
+
+  public int parent(int node) {
+    return this.parents[node];
+  }
+
+  public void close(int node) {
+    if (!this.sharing || this.tags[node] != NodeType.FUNC) {
+      return;
+    }
+
+    // A call is shared when all of its arguments are shared or shareable and it resolves to a pure method
+    String[] argTypes = new String[this.childCount[node]];
+    int i = 0;
+    for (int child = this.firstChild[node]; child >= 0; child = this.nextSibling[child]) {
+      int target = this.shared[child];
+      if (this.tags[target] == NodeType.FUNC && this.invokers[target] == null) {
+        return;
+      }
+      String type = this.tags[target] == NodeType.FUNC ? this.invokers[target].getReturnType() : this.types[target];
+      if (this.tags[target] == NodeType.VARIABLE) {
+        type = this.variableTypes.get(getText(target));
+        if (type == null) {
+          return;
+        }
+      }
+      argTypes[i++] = type;
+    }
+
+    Invoker m = this.index.resolve(getText(node), argTypes);
+    if (m == null || m.getHandle() == null || !this.purity.isPure(m)) {
+      return;
+    }
+    this.invokers[node] = m;
+    share(node);
+  }
+
+  /**
+    * Returns the number of nodes in the tree
+    *
+    * @return The number of nodes
+    */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+    * Returns the first child of a node
+    *
+    * @param node The id of the node
+    * @return The id of the first child, -1 if there is none
+    */
+  public int getFirstChild(int node) {
+    return this.firstChild[this.shared[node]];
+  }
+
+  /**
+    * Returns the next sibling of a node
+    *
+    * @param node The id of the node
+    * @return The id of the next sibling, -1 if there is none
+    */
+  public int getNextSibling(int node) {
+    return this.nextSibling[node];
+  }
+
+  /**
+    * Returns the number of children of a node
+    *
+    * @param node The id of the node
+    * @return The number of children
+    */
+  public int getChildCount(int node) {
+    return this.childCount[this.shared[node]];
+  }
+
+  /**
+    * Returns the type tag of a node
+    *
+    * @param node The id of the node
+    * @return The type tag, null for the initial root
+    */
+  public NodeType getTag(int node) {
+    return this.tags[this.shared[node]];
+  }
+
+  /**
+    * Returns the type name of a node
+    *
+    * @param node The id of the node
+    * @return The type name, null for the initial root
+    */
+  public String getType(int node) {
+    return this.types[this.shared[node]];
+  }
+
+  /**
+    * Returns the offset of a node in the parsed string
+    *
+    * @param node The id of the node
+    * @return The offset of the node
+    */
+  public int getOffset(int node) {
+    return this.offsets[node];
+  }
+
+  /**
+    * Returns the text a node was parsed from
+    *
+    * @param node The id of the node
+    * @return The text of the node
+    */
+  public String getText(int node) {
+    return new String(this.text, this.textStart[node], this.textLength[node]);
+  }
+
+  /**
+    * Returns the value of an int node, parsing its text on first use
+    *
+    * @param node The id of the node
+    * @return The int value of the node
+    * @throws NumberFormatException If the text of the node is not an int
+    */
+  public int getInt(int node) {
+    node = this.shared[node];
+    if (!this.hasValue[node]) {
+      int start = this.textStart[node];
+      this.intValues[node] = Integer.parseInt(this.textView, start, start + this.textLength[node], 10);
+      this.hasValue[node] = true;
+    }
+    return this.intValues[node];
+  }
+
+  /**
+    * Returns the value of a float node, parsing its text on first use
+    *
+    * @param node The id of the node
+    * @return The float value of the node
+    * @throws NumberFormatException If the text of the node is not a float
+    */
+  public float getFloat(int node) {
+    node = this.shared[node];
+    if (!this.hasValue[node]) {
+      this.floatValues[node] = Float.parseFloat(getText(node));
+      this.hasValue[node] = true;
+    }
+    return this.floatValues[node];
+  }
+
+  /**
+    * Returns the value of a String node, or the object held by a node of any other returned type
+    *
+    * @param node The id of the node
+    * @return The value of the node
+    */
+  public Object getValue(int node) {
+    node = this.shared[node];
+    if (this.values[node] == null && this.tags[node] == NodeType.STRING) {
+      this.values[node] = getText(node);
+    }
+    return this.values[node];
+  }
+
+  /**
+    * Stores an int result in a node
+    *
+    * @param node The id of the node
+    * @param value The new value of the node
+    */
+  public void setInt(int node, int value) {
+    node = this.shared[node];
+    setTag(node, NodeType.INT, NodeType.INT.getName());
+    this.intValues[node] = value;
+  }
+
+  /**
+    * Stores a float result in a node
+    *
+    * @param node The id of the node
+    * @param value The new value of the node
+    */
+  public void setFloat(int node, float value) {
+    node = this.shared[node];
+    setTag(node, NodeType.FLOAT, NodeType.FLOAT.getName());
+    this.floatValues[node] = value;
+  }
+
+  /**
+    * Stores a result of any other type in a node
+    *
+    * @param node The id of the node
+    * @param value The new value of the node
+    * @param tag The type tag of the value
+    * @param type The type name of the value
+    */
+  public void setValue(int node, Object value, NodeType tag, String type) {
+    node = this.shared[node];
+    setTag(node, tag, type);
+    this.values[node] = value;
+  }
+
+  /**
+    * Returns the value of a node as it is printed
+    *
+    * @param node The id of the node
+    * @return The value as a String
+    */
+  public String format(int node) {
+    node = this.shared[node];
+    if (!this.hasValue[node]) {
+      return getText(node);
+    }
+    switch(this.tags[node]) {
+      case INT:
+        return Integer.toString(this.intValues[node]);
+      case FLOAT:
+        return Float.toString(this.floatValues[node]);
+      default:
+        return this.values[node].toString();
+    }
+  }
+
+  /**
+    * Returns the node a node refers to
+    *
+    * @param node The id of the node
+    * @return The id of the earlier equal node it shares, or the node itself
+    */
+  public int getShared(int node) {
+    return this.shared[node];
+  }
+
+  /**
+    * Makes a node refer to an earlier equal node, or records it as the first of its kind
+    *
+    * @param node The id of the node, the last node of the tree apart from its descendants
+    */
+  private void share(int node) {
+    int mask = this.canonical.length - 1;
+    int slot = hash(node) & mask;
+    int first = this.canonical[slot] - 1;
+    while (first >= 0 && !same(first, node)) {
+      slot = (slot + 1) & mask;
+      first = this.canonical[slot] - 1;
+    }
+    if (first < 0) {
+      this.canonical[slot] = node + 1;
+      if (++this.canonicalCount*2 > this.canonical.length) {
+        rehash();
+      }
+      return;
+    }
+
+    // The descendants of the node follow it in the arrays and in the text pool, so dropping them shrinks both
+    this.shared[node] = first;
+    this.size = node+1;
+    this.textSize = this.textStart[node];
+    this.textStart[node] = this.textStart[first];
+    this.textLength[node] = this.textLength[first];
+    this.firstChild[node] = -1;
+    this.lastChild[node] = -1;
+    this.childCount[node] = 0;
+  }
+
+  /**
+    * Hashes the tag, text and argument references of a node
+    *
+    * @param node The id of the node
+    * @return The hash code of the node
+    */
+  private int hash(int node) {
+    int h = this.tags[node].ordinal();
+    for (int i = this.textStart[node], end = i + this.textLength[node]; i < end; i++) {
+      h = 31*h + this.text[i];
+    }
+    for (int child = this.firstChild[node]; child >= 0; child = this.nextSibling[child]) {
+      h = 31*h + this.shared[child];
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /**
+    * Determines if two nodes have the same tag and text and refer to the same arguments
+    *
+    * @param a The id of the first node
+    * @param b The id of the second node
+    * @return Whether or not the nodes are equal
+    */
+  private boolean same(int a, int b) {
+    if (this.tags[a] != this.tags[b] || this.childCount[a] != this.childCount[b]) {
+      return false;
+    }
+    int start = this.textStart[a];
+    int other = this.textStart[b];
+    if (!Arrays.equals(this.text, start, start + this.textLength[a], this.text, other, other + this.textLength[b])) {
+      return false;
+    }
+    int y = this.firstChild[b];
+    for (int x = this.firstChild[a]; x >= 0; x = this.nextSibling[x], y = this.nextSibling[y]) {
+      if (this.shared[x] != this.shared[y]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+    * Doubles the table of shareable nodes
+    *
+    */
+  private void rehash() {
+    int[] old = this.canonical;
+    this.canonical = new int[old.length*2];
+    int mask = this.canonical.length - 1;
+    for (int entry : old) {
+      if (entry > 0) {
+        int slot = hash(entry - 1) & mask;
+        while (this.canonical[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        this.canonical[slot] = entry;
+      }
+    }
+  }
+
+  /**
+    * Changes the type of a node that now holds a value
+    *
+    * @param node The id of the node
+    * @param tag The new type tag
+    * @param type The new type name
+    */
+  private void setTag(int node, NodeType tag, String type) {
+    this.tags[node] = tag;
+    this.types[node] = type;
+    this.hasValue[node] = true;
+    this.values[node] = null;
+  }
+
+  /**
+    * Adds a node without children
+    *
+    * @param tag The type tag of the node
+    * @param parent The id of the parent node
+    * @param offset Where this node was found in the parsed string
+    * @return The id of the new node
+    */
+  private int add(NodeType tag, int parent, int offset) {
+    if (this.size == this.tags.length) {
+      grow();
+    }
+    int id = this.size++;
+    this.tags[id] = tag;
+    this.types[id] = tag == null ? null : tag.getName();
+    this.parents[id] = parent;
+    this.firstChild[id] = -1;
+    this.lastChild[id] = -1;
+    this.nextSibling[id] = -1;
+    this.childCount[id] = 0;
+    this.offsets[id] = offset;
+    this.hasValue[id] = false;
+    this.shared[id] = id;
+    this.invokers[id] = null;
+    return id;
+  }
+
+  /**
+    * Copies the text of a node into the text pool
+    *
+    * @param node The id of the node
+    * @param chars The buffer holding the text
+    * @param length The length of the text
+    */
+  private void appendText(int node, char[] chars, int length) {
+    if (this.textSize + length > this.text.length) {
+      this.text = Arrays.copyOf(this.text, Math.max(this.text.length*2, this.textSize + length));
+      this.textView = CharBuffer.wrap(this.text);
+    }
+    System.arraycopy(chars, 0, this.text, this.textSize, length);
+    this.textStart[node] = this.textSize;
+    this.textLength[node] = length;
+    this.textSize += length;
+  }
+
+  /**
+    * Doubles the capacity of the node arrays
+    *
+    */
+  private void grow() {
+    int capacity = this.tags.length*2;
+    this.tags = Arrays.copyOf(this.tags, capacity);
+    this.types = Arrays.copyOf(this.types, capacity);
+    this.parents = Arrays.copyOf(this.parents, capacity);
+    this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+    this.lastChild = Arrays.copyOf(this.lastChild, capacity);
+    this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+    this.childCount = Arrays.copyOf(this.childCount, capacity);
+    this.offsets = Arrays.copyOf(this.offsets, capacity);
+    this.textStart = Arrays.copyOf(this.textStart, capacity);
+    this.textLength = Arrays.copyOf(this.textLength, capacity);
+    this.hasValue = Arrays.copyOf(this.hasValue, capacity);
+    this.intValues = Arrays.copyOf(this.intValues, capacity);
+    this.floatValues = Arrays.copyOf(this.floatValues, capacity);
+    this.values = Arrays.copyOf(this.values, capacity);
+    this.shared = Arrays.copyOf(this.shared, capacity);
+    this.invokers = Arrays.copyOf(this.invokers, capacity);
+  }
+}
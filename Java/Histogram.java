@@ -0,0 +1,98 @@
+package methods;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram class
+ *
+ * Latency histogram with one bucket per power of two nanoseconds. Every bucket is a striped counter, so threads
+ * recording at the same time do not contend.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Histogram {
+  private static final int BUCKETS = 64;
+
+  private LongAdder[] buckets = new LongAdder[BUCKETS];
+  private LongAdder total = new LongAdder();
+
+  /**
+    * Histogram constructor
+    *
+    */
+  public Histogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+    * Records one measurement
+    *
+    * @param nanos The measured time in nanoseconds
+    */
+  public void record(long nanos) {
+    nanos = Math.max(nanos, 0);
+    this.buckets[BUCKETS - Long.numberOfLeadingZeros(nanos) - 1 + (nanos == 0 ? 1 : 0)].increment();
+    this.total.add(nanos);
+  }
+
+  /**
+    * Returns the number of measurements
+    *
+    * @return The count
+    */
+  public long getCount() {
+    long count = 0;
+    for (LongAdder bucket : this.buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  /**
+    * Returns the mean of the measurements
+    *
+    * @return The mean in nanoseconds, 0 if nothing was recorded
+    */
+  public long getMean() {
+    long count = getCount();
+    return count == 0 ? 0 : this.total.sum()/count;
+  }
+
+  /**
+    * Returns an upper bound of a percentile of the measurements
+    *
+    * @param percentile The percentile, between 0 and 100
+    * @return The upper bound of the bucket holding the percentile in nanoseconds, 0 if nothing was recorded
+    */
+  public long getPercentile(double percentile) {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = this.buckets[i].sum();
+      count += counts[i];
+    }
+
+    long rank = Math.max((long) Math.ceil(count*percentile/100), 1);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (count > 0 && seen >= rank) {
+        return i == BUCKETS-1 ? Long.MAX_VALUE : (1L << i+1) - 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+    * Forgets every measurement
+    *
+    */
+  public void reset() {
+    for (LongAdder bucket : this.buckets) {
+      bucket.reset();
+    }
+    this.total.reset();
+  }
+}
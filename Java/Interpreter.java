@@ -0,0 +1,573 @@
+package methods;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Interpreter class
+ *
+ * Handles the lines entered in the REPL or read in batch mode
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Interpreter {
+  private ProcessJar jar;
+  private Class[] classes;
+  private MethodIndex methodIndex;
+  private ExpressionParser parser = new ExpressionParser();
+  private FlatTree tree = new FlatTree();
+  private FlatEvaluator evaluator;
+  private ExpressionCompiler compiler;
+  private ExpressionCache expressions = new ExpressionCache();
+  private SiblingScheduler siblings;
+  private Purity purity = new Purity();
+  private Metrics metrics;
+  private Watchdog watchdog;
+  private JarReloader reloader;
+  private JarReloader.Version version;
+  private PrintStream out;
+  private boolean verbose;
+
+  /**
+    * Interpreter constructor
+    *
+    * @param jarFile The name of the jar file
+    * @param className The name of the class containing all concrete methods
+    */
+  public Interpreter(String jarFile, String className) {
+    this(new ProcessJar(jarFile), className);
+  }
+
+  /**
+    * Interpreter constructor
+    *
+    * @param jar The processor of the jar file
+    * @param className The name of the class containing all concrete methods
+    */
+  public Interpreter(ProcessJar jar, String className) {
+    this(jar, jar.accessJar(className));
+  }
+
+  /**
+    * Interpreter constructor
+    *
+    * Interpreters sharing a ProcessJar and class share its dispatch index
+    *
+    * @param jar The processor of the jar file
+    * @param cls The class containing all concrete methods
+    */
+  public Interpreter(ProcessJar jar, Class cls) {
+    this(jar, new Class[] {cls});
+  }
+
+  /**
+    * Interpreter constructor
+    *
+    * Functions resolve to the first of the classes with a matching method, or to the class they are qualified
+    * with. Interpreters sharing a ProcessJar and classes share their combined dispatch index.
+    *
+    * @param jar The processor of the jar files
+    * @param classes The classes containing all concrete methods, in order of precedence
+    */
+  public Interpreter(ProcessJar jar, Class[] classes) {
+    this.jar = jar;
+    this.classes = classes;
+    this.methodIndex = jar.getIndex(classes);
+    this.evaluator = new FlatEvaluator(this.methodIndex);
+    this.compiler = new ExpressionCompiler(this.methodIndex);
+    this.compiler.setPurity(this.purity);
+    this.tree.setSharing(this.methodIndex, this.purity);
+    setMetrics(Metrics.getDefault());
+    this.verbose = Main.verboseFlag;
+    setOut(System.out);
+  }
+
+  /**
+    * Interpreter constructor
+    *
+    * The Interpreter follows the versions of the jar files published by the reloader
+    *
+    * @param reloader The reloader of the jar files
+    */
+  public Interpreter(JarReloader reloader) {
+    this(reloader.getCurrent().getJar(), reloader.getCurrent().getClasses());
+    setReloader(reloader);
+  }
+
+  /**
+    * Sets the stream output is printed to
+    *
+    * @param out The stream, sysout by default
+    */
+  public void setOut(PrintStream out) {
+    this.out = out;
+    this.parser.setOut(out);
+  }
+
+  /**
+    * Returns whether or not verbose mode is on
+    *
+    * @return The verbose mode
+    */
+  public boolean isVerbose() {
+    return this.verbose;
+  }
+
+  /**
+    * Turns verbose mode on or off
+    *
+    * @param verbose The verbose mode
+    */
+  public void setVerbose(boolean verbose) {
+    this.verbose = verbose;
+  }
+
+  /**
+    * Returns the cache used for the results of pure methods
+    *
+    * @return The cache, null if memoization is off
+    */
+  public MemoCache getMemoCache() {
+    return this.evaluator.getMemoCache();
+  }
+
+  /**
+    * Returns the rules deciding which methods are folded, shared and memoized
+    *
+    * @return The purity rules
+    */
+  public Purity getPurity() {
+    return this.purity;
+  }
+
+  /**
+    * Sets the rules deciding which methods are folded, shared and memoized. A memo cache set afterwards should be
+    * created with the same rules.
+    *
+    * @param purity The purity rules
+    */
+  public void setPurity(Purity purity) {
+    if (purity != this.purity) {
+      recompile();
+      this.purity = purity;
+      this.compiler.setPurity(purity);
+      this.tree.setSharing(this.methodIndex, purity);
+    }
+  }
+
+  /**
+    * Sets the cache used for the results of pure methods
+    *
+    * @param memo The cache, created with the purity rules of this Interpreter, or null to turn memoization off
+    */
+  public void setMemoCache(MemoCache memo) {
+    if (memo != this.evaluator.getMemoCache()) {
+      recompile();
+      this.evaluator.setMemoCache(memo);
+      this.compiler.setMemoCache(memo);
+    }
+  }
+
+  /**
+    * Returns the metrics recording the calls made by this Interpreter
+    *
+    * @return The metrics, null if nothing is recorded
+    */
+  public Metrics getMetrics() {
+    return this.metrics;
+  }
+
+  /**
+    * Sets the metrics recording the calls made by this Interpreter, the shared Metrics.getDefault() by default
+    *
+    * @param metrics The metrics, or null to record nothing
+    */
+  public void setMetrics(Metrics metrics) {
+    if (metrics != this.metrics) {
+      recompile();
+      this.metrics = metrics;
+      this.evaluator.setMetrics(metrics);
+      this.compiler.setMetrics(metrics);
+    }
+  }
+
+  /**
+    * Returns the watchdog that bounds how long expressions and method calls may take
+    *
+    * @return The watchdog, null if there are no timeouts
+    */
+  public Watchdog getWatchdog() {
+    return this.watchdog;
+  }
+
+  /**
+    * Sets the watchdog that bounds how long expressions and method calls may take
+    *
+    * @param watchdog The watchdog, or null to let every call run until it returns
+    */
+  public void setWatchdog(Watchdog watchdog) {
+    if (watchdog != this.watchdog) {
+      recompile();
+      this.watchdog = watchdog;
+      this.evaluator.setWatchdog(watchdog);
+      this.compiler.setWatchdog(watchdog);
+    }
+  }
+
+  /**
+    * Returns the reloader whose versions of the jar files this Interpreter follows
+    *
+    * @return The reloader, null if the classes never change
+    */
+  public JarReloader getReloader() {
+    return this.reloader;
+  }
+
+  /**
+    * Makes this Interpreter follow the versions of the jar files published by a reloader. The latest version is
+    * picked up at the start of each line, so a line is evaluated against a single version.
+    *
+    * @param reloader The reloader, or null to keep the current classes
+    */
+  public void setReloader(JarReloader reloader) {
+    this.reloader = reloader;
+    this.version = reloader == null ? null : reloader.getCurrent();
+    if (this.version != null) {
+      use(this.version);
+    }
+  }
+
+  /**
+    * Returns the scheduler that evaluates the function arguments of a call concurrently
+    *
+    * @return The scheduler, null if arguments are evaluated in order
+    */
+  public SiblingScheduler getSiblingScheduler() {
+    return this.siblings;
+  }
+
+  /**
+    * Sets the scheduler that evaluates the function arguments of a call concurrently
+    *
+    * @param siblings The scheduler, or null to evaluate arguments in order
+    */
+  public void setSiblingScheduler(SiblingScheduler siblings) {
+    if (siblings != this.siblings) {
+      recompile();
+      this.siblings = siblings;
+      this.compiler.setSiblingScheduler(siblings);
+    }
+  }
+
+  /**
+    * Determines if a line is a command rather than an expression
+    *
+    * @param str The line
+    * @return Whether or not the line is one of the single letter commands
+    */
+  public static boolean isCommand(String str) {
+    if (str.startsWith("t ")) {
+      return true;
+    }
+    switch (str) {
+      case "?":
+      case "q":
+      case "v":
+      case "m":
+      case "p":
+      case "s":
+      case "f":
+      case "t":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+    * Handles one line, printing its output
+    *
+    * @param str The line
+    * @return False if the line asks to quit the program, true otherwise
+    */
+  public boolean processLine(String str) {
+    if (this.reloader != null && this.reloader.getCurrent() != this.version) {
+      this.version = this.reloader.getCurrent();
+      use(this.version);
+      if (this.verbose) {
+        this.out.println("Loaded version " + this.version.getNumber() + " of the jar files.");
+      }
+    }
+
+    switch (str){
+      case "?":
+        Main.printStartUp(this.out);
+        break;
+      case "q":
+        this.out.println("bye.");
+        return false;
+      case "v":
+        this.verbose = (!(this.verbose));
+			  this.out.println("Verbose " + (this.verbose ? "on." : "off."));
+			  break;
+      case "m":
+        if (getMemoCache() == null) {
+          setMemoCache(new MemoCache(this.purity));
+          this.out.println("Memoization on.");
+        }
+        else {
+          MemoCache memo = getMemoCache();
+          setMemoCache(null);
+          this.out.println("Memoization off (" + memo.getHits() + " hits, " + memo.getMisses() + " misses, " + memo.getEvictions() + " evictions).");
+        }
+        break;
+      case "p":
+        if (this.siblings == null) {
+          setSiblingScheduler(new SiblingScheduler());
+          this.out.println("Parallel arguments on.");
+        }
+        else {
+          this.siblings.getPool().shutdown();
+          setSiblingScheduler(null);
+          this.out.println("Parallel arguments off.");
+        }
+        break;
+      case "s":
+        if (this.metrics == null) {
+          this.out.println("Metrics off.");
+        }
+        else {
+          this.out.print(this.metrics.report());
+        }
+        break;
+      case "f":
+        this.jar.listMethods(this.classes, this.out);
+        break;
+      case "t":
+        printTimeouts();
+        break;
+      case "":
+        break;
+      default:
+        if (str.startsWith("t ")) {
+          setTimeout(str.substring(2).trim().split("\\s+"));
+          break;
+        }
+        long deadline = this.watchdog == null ? 0 : this.watchdog.begin();
+        try {
+          String trimmed = str.trim();
+          char[] charArray = trimmed.toCharArray();
+          String firstChar = Character.toString(charArray[0]);
+          String lastChar = Character.toString(charArray[charArray.length-1]);
+          int index = 0;
+          int quoatationCount = 0;
+          if (!firstChar.equals('(')) {
+            if (firstChar.equals("\"")) {
+              if (lastChar.equals("\"")) {
+                for (char i : charArray) {
+                  if (Character.toString(i).equals("\"")) {
+                    if (quoatationCount > 2) {
+                      break;
+                    }
+
+                      quoatationCount++;
+                      index++;
+                      continue;
+                  }
+
+
+                  index++;
+                }
+                if (quoatationCount == 2) {
+                  trimmed = trimmed.substring(1, trimmed.length()-1);
+                  this.out.println(trimmed);
+                  return true;
+                }
+              }
+            }
+            else {
+              if (trimmed.matches("^[0-9]*\\.?[0-9]*$")) {
+                if (!firstChar.equals(".")) {
+                  this.out.println(trimmed);
+                  return true;
+                }
+              }
+            }
+          }
+
+          // Repeated lines skip parsing and resolution. Lines that do not compile are evaluated by the
+          // FlatEvaluator, which reports their errors.
+          CompiledExpression expression = this.expressions.get(str, this.methodIndex);
+          if (expression == null) {
+            long start = this.metrics == null ? 0 : this.metrics.getParseTimer().start();
+            int root = this.parser.tryParse(str, this.tree);
+            if (this.metrics != null) {
+              this.metrics.getParseTimer().finish(start, root < 0);
+            }
+            if (root < 0) {
+              report(this.parser.getDiagnostic(), str);
+              return true;
+            }
+
+            if (this.metrics != null) {
+              start = this.metrics.getResolveTimer().start();
+            }
+            expression = this.compiler.tryCompile(this.tree, root, str);
+            if (this.metrics != null) {
+              this.metrics.getResolveTimer().finish(start, expression == null);
+            }
+            if (expression == null) {
+              Diagnostic error = this.evaluator.evaluate(this.tree, root);
+              if (error != null) {
+                report(error, str);
+              }
+              else {
+                this.out.println(this.tree.format(root));
+              }
+              return true;
+            }
+            this.expressions.put(str, this.methodIndex, expression);
+          }
+
+          Object result;
+          if (this.metrics == null) {
+            result = expression.evaluate();
+          }
+          else {
+            Metrics.Timer invoke = this.metrics.getInvokeTimer();
+            long start = invoke.start();
+            boolean failed = true;
+            try {
+              result = expression.evaluate();
+              failed = false;
+            }
+            finally {
+              invoke.finish(start, failed);
+            }
+          }
+          this.out.println(result);
+        }
+        catch(CallTimeoutException e) {
+          e.getDiagnostic().print(this.out, str);
+          if(this.verbose){
+            printTrace(e);
+          }
+        }
+        catch(ArithmeticException e) {
+          this.out.println("Number exceeds Java number range");
+          if(this.verbose){
+            printTrace(e);
+          }
+        }
+        catch(Exception e) {
+  			  if(this.verbose){
+            printTrace(e);
+          }
+        }
+        finally {
+          if (this.watchdog != null) {
+            this.watchdog.end(deadline);
+          }
+        }
+    }
+    return true;
+  }
+
+  /**
+    * Prints the timeouts of expressions and functions
+    */
+  private void printTimeouts() {
+    if (this.watchdog == null || (this.watchdog.getExpressionTimeout() == 0 && this.watchdog.getFunctionTimeouts().isEmpty())) {
+      this.out.println("Timeouts off.");
+      return;
+    }
+    if (this.watchdog.getExpressionTimeout() > 0) {
+      this.out.println("Expressions time out after " + this.watchdog.getExpressionTimeout() + " ms.");
+    }
+    for (Map.Entry<String, Long> function : new TreeMap<String, Long>(this.watchdog.getFunctionTimeouts()).entrySet()) {
+      this.out.println("Calls of " + function.getKey() + " time out after " + function.getValue() + " ms.");
+    }
+  }
+
+  /**
+    * Sets the timeout of expressions, or of the calls of one function, from the arguments of the t command
+    *
+    * @param args The timeout in milliseconds, preceded by the function if it is the timeout of a function
+    */
+  private void setTimeout(String[] args) {
+    long millis;
+    try {
+      millis = Long.parseLong(args[args.length-1]);
+    }
+    catch (NumberFormatException e) {
+      millis = -1;
+    }
+    if (args.length > 2 || millis < 0) {
+      this.out.println("Usage: t [<function>] <milliseconds>");
+      return;
+    }
+
+    Watchdog watchdog = this.watchdog == null ? new Watchdog() : this.watchdog;
+    if (args.length == 1) {
+      setWatchdog(watchdog.withExpressionTimeout(millis));
+    }
+    else {
+      setWatchdog(watchdog.withFunctionTimeout(args[0], millis));
+    }
+    printTimeouts();
+  }
+
+  /**
+    * Switches to a version of the jar files, dropping everything that refers to the previous one
+    *
+    * @param version The version
+    */
+  private void use(JarReloader.Version version) {
+    this.jar = version.getJar();
+    this.classes = version.getClasses();
+    this.methodIndex = version.getIndex();
+    this.evaluator.setIndex(this.methodIndex);
+    this.compiler.setIndex(this.methodIndex);
+    this.tree.setSharing(this.methodIndex, this.purity);
+    recompile();
+    if (getMemoCache() != null) {
+      // Cached results are keyed by the methods of the previous version
+      getMemoCache().clear();
+    }
+  }
+
+  /**
+    * Drops the compiled expressions, so that the next lines are compiled again. A compiled expression is bound to
+    * the methods, purity rules, memo cache, metrics, watchdog and scheduler it was compiled with, so this is done
+    * whenever one of them changes.
+    */
+  private void recompile() {
+    this.expressions.invalidate();
+  }
+
+  /**
+    * Prints an error found in an expression
+    *
+    * @param error The diagnostic of the error
+    * @param exp The entered expression
+    */
+  private void report(Diagnostic error, String exp) {
+    error.print(this.out, exp);
+    if (this.verbose) {
+      // Verbose mode prints errors as the exceptions they used to be thrown as
+      printTrace(error.toException());
+    }
+  }
+
+  /**
+    * Prints an error and the stack of the current thread, as verbose mode does
+    *
+    * @param e The error
+    */
+  private void printTrace(Exception e) {
+    this.out.println(e);
+    for(StackTraceElement st : Thread.currentThread().getStackTrace()){
+      this.out.println("	at " + st);
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package methods;
+
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+
+/**
+ * Invoker class
+ *
+ * Calls a resolved command method through a MethodHandle bound once per overload
+ *
+ * A reloaded class gets new invokers, so whatever is kept per invoker (purity, metrics, cost estimates) is held in
+ * a WeakHashMap, letting the invokers of the previous version be collected along with their class.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Invoker {
+  // Call shapes
+  public static final int GENERIC = 0;
+  public static final int INT_INT = 1;
+  public static final int FLOAT_FLOAT = 2;
+
+  private static final MethodType INT_INT_TYPE = MethodType.methodType(int.class, int.class, int.class);
+  private static final MethodType FLOAT_FLOAT_TYPE = MethodType.methodType(float.class, float.class, float.class);
+
+  private Method method;
+  private MethodHandle handle;
+  private MethodHandle spreader;
+  private int shape;
+  private String returnType;
+  private NodeType returnTag;
+  private volatile boolean bound;
+
+  /**
+    * Invoker constructor
+    *
+    * Methods that cannot be called as public static methods get no handle; calling them fails the same way a
+    * reflective call would. The handle is bound when it is first needed, since binding the handles of every
+    * method of a class takes most of the startup time.
+    *
+    * @param m The method to be called
+    */
+  public Invoker(Method m) {
+    this.method = m;
+    this.returnType = nodeType(m.getReturnType());
+    this.returnTag = NodeType.of(this.returnType);
+    this.shape = GENERIC;
+  }
+
+  /**
+    * Binds the handles of the method, once
+    */
+  private void bind() {
+    if (this.bound) {
+      return;
+    }
+    synchronized (this) {
+      if (this.bound) {
+        return;
+      }
+      try {
+        if (Modifier.isStatic(this.method.getModifiers())) {
+          this.handle = MethodHandles.publicLookup().unreflect(this.method);
+        }
+      }
+      catch (IllegalAccessException e) {}
+
+      if (this.handle != null) {
+        if (this.handle.type().equals(INT_INT_TYPE)) {
+          this.shape = INT_INT;
+        }
+        else if (this.handle.type().equals(FLOAT_FLOAT_TYPE)) {
+          this.shape = FLOAT_FLOAT;
+        }
+        int arity = this.method.getParameterCount();
+        this.spreader = this.handle.asType(MethodType.genericMethodType(arity)).asSpreader(Object[].class, arity);
+      }
+      this.bound = true;
+    }
+  }
+
+  /**
+    * Returns the method called by this invoker
+    *
+    * @return The method object
+    */
+  public Method getMethod() {
+    return this.method;
+  }
+
+  /**
+    * Returns the call shape of this invoker
+    *
+    * @return GENERIC, INT_INT or FLOAT_FLOAT
+    */
+  public int getShape() {
+    bind();
+    return this.shape;
+  }
+
+  /**
+    * Returns the handle of the method, null if the method cannot be called
+    *
+    * @return The method handle
+    */
+  public MethodHandle getHandle() {
+    bind();
+    return this.handle;
+  }
+
+  /**
+    * Returns the node type of the values returned by the method
+    *
+    * @return "Integer", "Float", "String" or the name of the return type
+    */
+  public String getReturnType() {
+    return this.returnType;
+  }
+
+  /**
+    * Returns the type tag of the values returned by the method
+    *
+    * @return The tag of the return type
+    */
+  public NodeType getReturnTag() {
+    return this.returnTag;
+  }
+
+  /**
+    * Calls an (int, int)int method without boxing, once getShape has returned INT_INT
+    *
+    * @param x The first argument
+    * @param y The second argument
+    * @return The result of the call
+    * @throws Throwable Anything thrown by the method
+    */
+  public int invokeInt(int x, int y) throws Throwable {
+    return (int) this.handle.invokeExact(x, y);
+  }
+
+  /**
+    * Calls a (float, float)float method without boxing, once getShape has returned FLOAT_FLOAT
+    *
+    * @param x The first argument
+    * @param y The second argument
+    * @return The result of the call
+    * @throws Throwable Anything thrown by the method
+    */
+  public float invokeFloat(float x, float y) throws Throwable {
+    return (float) this.handle.invokeExact(x, y);
+  }
+
+  /**
+    * Calls the method with boxed arguments
+    *
+    * @param args The arguments of the call
+    * @return The result of the call
+    * @throws Throwable Anything thrown by the method, or IllegalAccessException if it cannot be called
+    */
+  public Object invoke(Object[] args) throws Throwable {
+    bind();
+    if (this.spreader == null) {
+      throw new IllegalAccessException(this.method.toString());
+    }
+    return (Object) this.spreader.invokeExact(args);
+  }
+
+  /**
+    * Returns the node type used for values of a class
+    *
+    * @param c The class of the value
+    * @return The node type as a String
+    */
+  public static String nodeType(Class c) {
+    switch (c.getName()) {
+      case "java.lang.Integer":
+        return "Integer";
+      case "java.lang.Float":
+        return "Float";
+      case "java.lang.String":
+        return "String";
+      default:
+        return c.getName();
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package methods;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JarReloader class
+ *
+ * Watches the jar files of a session and loads each new version of them into a fresh class loader
+ *
+ * A version is loaded and its dispatch index built and bound on the watching thread, then published by replacing
+ * a single reference. Interpreters pick up the latest version when they start a line, so evaluations already
+ * running finish against the version they started with. Nothing else refers to an old version once every
+ * Interpreter has moved on, so its class loader can be collected.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class JarReloader implements Closeable {
+  // Writes to a jar file are taken to be finished after this long without another change
+  private static final long QUIET_MILLIS = 250;
+
+  private String[] jarNames;
+  private String[] classNames;
+  private volatile Version current;
+  private long[] stamps;
+  private WatchService watcher;
+  private Thread thread;
+
+  /**
+    * JarReloader constructor
+    *
+    * @param jar The processor of the jar files, holding the first version
+    * @param classNames The names of the classes to load, in order of precedence
+    */
+  public JarReloader(ProcessJar jar, String[] classNames) {
+    this.jarNames = jar.getJarNames();
+    this.classNames = classNames.clone();
+    this.stamps = stamps();
+    this.current = new Version(jar, jar.accessJar(this.classNames), 1);
+  }
+
+  /**
+    * Returns the latest version of the jar files
+    *
+    * @return The version
+    */
+  public Version getCurrent() {
+    return this.current;
+  }
+
+  /**
+    * Starts watching the jar files on a daemon thread
+    *
+    * @throws IOException If the directories of the jar files cannot be watched
+    */
+  public synchronized void start() throws IOException {
+    if (this.thread != null) {
+      return;
+    }
+    this.watcher = FileSystems.getDefault().newWatchService();
+    HashSet<Path> directories = new HashSet<Path>();
+    for (String name : this.jarNames) {
+      Path directory = Paths.get(name).toAbsolutePath().getParent();
+      if (directories.add(directory)) {
+        directory.register(this.watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+      }
+    }
+    this.thread = new Thread(this::watch, "jar-reloader");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+    * Stops watching the jar files
+    *
+    * @throws IOException If the watch service cannot be closed
+    */
+  public synchronized void close() throws IOException {
+    if (this.watcher != null) {
+      this.watcher.close();
+    }
+  }
+
+  /**
+    * Loads the jar files again if they changed since the current version was loaded
+    *
+    * @return Whether or not a new version was published
+    */
+  public synchronized boolean reload() {
+    long[] stamps = stamps();
+    if (Arrays.equals(stamps, this.stamps)) {
+      return false;
+    }
+
+    ProcessJar jar = new ProcessJar(this.jarNames);
+    Class[] classes = jar.accessJar(this.classNames);
+    for (Class cls : classes) {
+      if (cls == null) {
+        // Most likely a jar file still being written; the next change loads it again
+        return false;
+      }
+    }
+    jar.getIndex(classes).bindAll();
+
+    this.stamps = stamps;
+    this.current = new Version(jar, classes, this.current.getNumber()+1);
+    return true;
+  }
+
+  /**
+    * Reloads the jar files each time they change, until the reloader is closed
+    */
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = this.watcher.take();
+        boolean changed = drain(key);
+        // Wait for the writer to finish before loading the new version
+        while ((key = this.watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed |= drain(key);
+        }
+        if (changed) {
+          reload();
+        }
+      }
+    }
+    catch (InterruptedException | ClosedWatchServiceException e) {
+      // Closed
+    }
+  }
+
+  /**
+    * Consumes the events of a watch key
+    *
+    * @param key The watch key
+    * @return Whether or not one of the events concerns a jar file
+    */
+  private boolean drain(WatchKey key) {
+    boolean changed = false;
+    Path directory = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        changed = true;
+        continue;
+      }
+      Path file = directory.resolve((Path) event.context());
+      for (String name : this.jarNames) {
+        if (file.equals(Paths.get(name).toAbsolutePath())) {
+          changed = true;
+        }
+      }
+    }
+    key.reset();
+    return changed;
+  }
+
+  /**
+    * Reads the size and modification time of every jar file
+    *
+    * @return Two values per jar file
+    */
+  private long[] stamps() {
+    long[] stamps = new long[2*this.jarNames.length];
+    for (int i = 0; i < this.jarNames.length; i++) {
+      File file = new File(this.jarNames[i]);
+      stamps[2*i] = file.length();
+      stamps[2*i+1] = file.lastModified();
+    }
+    return stamps;
+  }
+
+  /**
+   * A loaded version of the jar files
+   */
+  public static class Version {
+    private final ProcessJar jar;
+    private final Class[] classes;
+    private final MethodIndex index;
+    private final int number;
+
+    Version(ProcessJar jar, Class[] classes, int number) {
+      this.jar = jar;
+      this.classes = classes;
+      this.index = jar.getIndex(classes);
+      this.number = number;
+    }
+
+    /**
+      * Returns the processor of the jar files of this version
+      *
+      * @return The processor, holding the class loader of this version
+      */
+    public ProcessJar getJar() {
+      return this.jar;
+    }
+
+    /**
+      * Returns the classes of this version
+      *
+      * @return The classes, in order of precedence
+      */
+    public Class[] getClasses() {
+      return this.classes.clone();
+    }
+
+    /**
+      * Returns the combined dispatch index of the classes of this version
+      *
+      * @return The index
+      */
+    public MethodIndex getIndex() {
+      return this.index;
+    }
+
+    /**
+      * Returns the number of this version, counting from 1 for the jar files loaded at startup
+      *
+      * @return The version number
+      */
+    public int getNumber() {
+      return this.number;
+    }
+  }
+}
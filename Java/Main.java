@@ -7,9 +7,6 @@ import java.text.*;
 import java.util.*;
 import java.net.*;
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 /**
  * Main class
@@ -17,12 +14,18 @@ import java.util.jar.JarFile;
  * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
  */
 public class Main {
-  private static String synopsis = "Synopsis:\n  methods\n  methods { -h | -? | --help }+\n  methods {-v --verbose}* <jar-file> [<class-name>]\nArguments:\n  <jar-file>:   The .jar file that contains the class to load (see next line).\n  <class-name>: The fully qualified class name containing public static command methods to call. [Default=\"Commands\"]\nQualifiers:\n  -v --verbose: Print out detailed errors, warning, and tracking.\n  -h -? --help: Print out a detailed help message.\nSingle-char qualifiers may be grouped; long qualifiers may be truncated to unique prefixes and are not case sensitive.";
+  private static String synopsis = "Synopsis:\n  methods\n  methods { -h | -? | --help }+\n  methods {-v --verbose}* <jar-file> [<class-name>]\n  methods {--batch | --parallel} <input-file> {-v --verbose}* <jar-file> [<class-name>]\n  methods --server <address> {-v --verbose}* <jar-file> [<class-name>]\n  methods --columns <csv-file> <expression> {-v --verbose}* <jar-file> [<class-name>]\nArguments:\n  <jar-file>:   The .jar file that contains the class to load (see next line). Several may be separated by '" + File.pathSeparator + "'.\n  <class-name>: The fully qualified class name containing public static command methods to call. [Default=\"Commands\"]\n                Several may be separated by ','; the first class with a matching method is called, and\n                (<class>.<method> ...) calls the method of the class with that simple name.\n  <input-file>: A file with one line of input per line, evaluated as if it was entered.\n  <address>:    A port number on the loopback interface, or the path of a Unix-domain socket to create.\n  <csv-file>:   A file of comma-separated values whose first line names the columns.\n  <expression>: A function call evaluated for every row of <csv-file>, referring to its columns as $<name>.\nQualifiers:\n  --batch:      Evaluate the lines of <input-file> without prompts, then exit.\n  --parallel:   Like --batch, but evaluate the lines on all processors. The output stays in input order.\n  --server:     Answer each line received on <address> with the output it would print when entered.\n  --columns:    Print the value of <expression> for every row of <csv-file>, computed a column at a time on all processors.\n  -v --verbose: Print out detailed errors, warning, and tracking.\n  -h -? --help: Print out a detailed help message.\nSingle-char qualifiers may be grouped; long qualifiers may be truncated to unique prefixes and are not case sensitive.";
   public static boolean verboseFlag = false;
   private static int jarIndex = 0;
   private static int classIndex = 1;
   private static String jarFile = "";
   private static String className = "Commands";
+  private static String batchFile = null;
+  private static boolean parallelFlag = false;
+  private static String serverAddress = null;
+  private static String columnsFile = null;
+  private static String columnsExpression = null;
+  private static ProcessJar jar = null;
 
   /**
    * Main function
@@ -38,6 +41,18 @@ public class Main {
   	  System.exit(0);
     }
 
+    // Process batch qualifier (if any) and continue with the arguments that follow the input file
+    if (args[0].length() > 2 && ("--batch".startsWith(args[0]) || "--parallel".startsWith(args[0])))
+      args = processBatchQualifier(args);
+
+    // Process server qualifier (if any) and continue with the arguments that follow the address
+    else if (args[0].length() > 2 && "--server".startsWith(args[0]))
+      args = processServerQualifier(args);
+
+    // Process columns qualifier (if any) and continue with the arguments that follow the expression
+    else if (args[0].length() > 2 && "--columns".startsWith(args[0]))
+      args = processColumnsQualifier(args);
+
     // Filter out unrecognized qualifiers that begin with "--"
     if (args[0].startsWith("--") && !"help".contains(args[0].substring(2, args[0].length())) && !"verbose".contains(args[0].substring(2, args[0].length()))){
       System.err.println("Unrecognized qualifier: "+args[0]+".");
@@ -76,6 +91,15 @@ public class Main {
     verifyClassName(args);
 
     // Program will reach this point if all command line arguments are valid. Continue with normal program execution
+    if (batchFile != null) {
+      batchLoop();
+    }
+    if (serverAddress != null) {
+      serverLoop();
+    }
+    if (columnsFile != null) {
+      columnsLoop();
+    }
     printStartUp();
     mainLoop();
   }
@@ -85,99 +109,216 @@ public class Main {
    *
    */
   public static void mainLoop() {
-    ProcessJar jar = new ProcessJar(jarFile);
-    Class cls = jar.accessJar(className);
-    ParseTree tree = new ParseTree();
+    Interpreter interpreter = new Interpreter(watchJarFiles());
+    interpreter.setWatchdog(watchdog());
 	  Scanner s = new Scanner(System.in);
-	  String str;
 	  while(true) {
       System.out.print("> ");
-      str = s.nextLine();
-      switch (str){
-        case "?":
-          printStartUp();
-          break;
-        case "q":
-          System.out.println("bye.");
-  			  System.exit(0);
-  			  break;
-        case "v":
-          verboseFlag = (!(verboseFlag));
-  			  System.out.println("Verbose " + (verboseFlag ? "on." : "off."));
-  			  break;
-        case "f":
-          jar.listMethods(cls);
-          break;
-        case "":
-          break;
-        default:
-          try {
-            String trimmed = str.trim();
-            char[] charArray = trimmed.toCharArray();
-            String firstChar = Character.toString(charArray[0]);
-            String lastChar = Character.toString(charArray[charArray.length-1]);
-            String[] noSpaces = null;
-            int index = 0;
-            int quoatationCount = 0;
-            if (!firstChar.equals('(')) {
-              if (firstChar.equals("\"")) {
-                if (lastChar.equals("\"")) {
-                  for (char i : charArray) {
-                    if (Character.toString(i).equals("\"")) {
-                      if (quoatationCount > 2) {
-                        break;
-                      }
-
-                        quoatationCount++;
-                        index++;
-                        continue;
-                    }
-
-
-                    index++;
-                  }
-                  if (quoatationCount == 2) {
-                    trimmed = trimmed.substring(1, trimmed.length()-1);
-                    System.out.println(trimmed);
-                    continue;
-                  }
-                }
-              }
-              else {
-                if (trimmed.matches("^[0-9]*\\.?[0-9]*$")) {
-                  if (!firstChar.equals(".")) {
-                    System.out.println(trimmed);
-                    continue;
-                  }
-                }
-              }
-            }
-
-            tree.buildTree(str);
-            Evaluator evaluate = new Evaluator(tree);
-            evaluate.evaluateTree(tree.getRoot(), cls, jar, str);
-            if (!tree.getRoot().getType().equals("func"))
-              System.out.println(tree.getRoot().getData());
-          }
-          catch(ArithmeticException e) {
-            System.out.println("Number exceeds Java number range");
-            if(verboseFlag){
-              System.out.println(e);
-              for(StackTraceElement st : Thread.currentThread().getStackTrace()){
-                System.out.println("	at " + st);
-              }
-            }
-          }
-          catch(Exception e) {
-    			  if(verboseFlag){
-              System.out.println(e);
-              for(StackTraceElement st : Thread.currentThread().getStackTrace()){
-                System.out.println("	at " + st);
-              }
-            }
+      if (!interpreter.processLine(s.nextLine())) {
+  			System.exit(0);
+      }
+    }
+  }
+
+  /**
+   * serverLoop function
+   *
+   * Loads the jar once and answers the lines received on the server address until the program is stopped
+   */
+  public static void serverLoop() {
+    Class[] classes = jar.accessJar(classNames());
+    try {
+      ExpressionServer server = new ExpressionServer(jar, classes, serverAddress);
+      server.setReloader(watchJarFiles());
+      server.setWatchdog(watchdog());
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          server.close();
+        }
+        catch (IOException e) {
+          // Exiting anyway
+        }
+      }));
+      System.out.println("Listening on " + server.getAddress() + ".");
+      server.run();
+    }
+    catch (IOException e) {
+      System.err.println("Could not listen on: " + serverAddress);
+      System.exit(-8);
+    }
+    System.exit(0);
+  }
+
+  /**
+   * watchJarFiles function
+   *
+   * Starts loading the jar files again whenever they change, for the long-running modes
+   *
+   * @return The reloader of the jar files
+   */
+  public static JarReloader watchJarFiles() {
+    JarReloader reloader = new JarReloader(jar, classNames());
+    try {
+      reloader.start();
+    }
+    catch (IOException e) {
+      // The jar files are then loaded only once
+      if (verboseFlag) {
+        System.out.println(e);
+      }
+    }
+    return reloader;
+  }
+
+  /**
+   * watchdog function
+   *
+   * Creates the watchdog timing out expressions after the number of milliseconds given by the methods.timeout
+   * system property
+   *
+   * @return The watchdog, null if the property is not set
+   */
+  public static Watchdog watchdog() {
+    long millis = Long.getLong("methods.timeout", 0);
+    return millis > 0 ? new Watchdog().withExpressionTimeout(millis) : null;
+  }
+
+  /**
+   * batchLoop function
+   *
+   * Evaluates every line of the batch file, writing the output through a large buffer and without prompts
+   */
+  public static void batchLoop() {
+    PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+    System.setOut(out);
+    Class[] classes = jar.accessJar(classNames());
+    try (BatchReader reader = new BatchReader(batchFile)) {
+      if (parallelFlag) {
+        ParallelBatch batch = new ParallelBatch(jar, classes, Runtime.getRuntime().availableProcessors());
+        batch.setWatchdog(watchdog());
+        batch.run(reader, out);
+      }
+      else {
+        Interpreter interpreter = new Interpreter(jar, classes);
+        interpreter.setWatchdog(watchdog());
+        String line;
+        while ((line = reader.nextLine()) != null) {
+          if (!interpreter.processLine(line)) {
+            break;
           }
+        }
       }
     }
+    catch (IOException e) {
+      out.flush();
+      System.err.println("Could not read input file: " + batchFile);
+      System.exit(-7);
+    }
+    out.flush();
+    System.exit(0);
+  }
+
+  /**
+   * columnsLoop function
+   *
+   * Evaluates the expression for every row of the CSV file, writing the results through a large buffer
+   */
+  public static void columnsLoop() {
+    PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+    Class[] classes = jar.accessJar(classNames());
+    ColumnarBatch batch = new ColumnarBatch(jar.getIndex(classes), columnsExpression, Runtime.getRuntime().availableProcessors());
+    batch.setWatchdog(watchdog());
+    try (BatchReader reader = new BatchReader(columnsFile)) {
+      batch.run(reader, out);
+    }
+    catch (IOException e) {
+      out.flush();
+      System.err.println("Could not read input file: " + columnsFile);
+      System.exit(-7);
+    }
+    catch (ParseException e) {
+      out.flush();
+      System.err.println(e.getMessage());
+      System.err.println(columnsExpression);
+      System.err.print(ParseTree.arrow(e.getErrorOffset()+1));
+      System.exit(-9);
+    }
+    out.flush();
+    System.exit(0);
+  }
+
+  /**
+   * processBatchQualifier() function
+   *
+   * Processes batch and parallel qualifiers
+   *
+   * @param args Array of command line arguments
+   * @return The command line arguments following the input file
+   */
+  public static String[] processBatchQualifier(String[] args) {
+    // The input file and a jar file must follow the batch qualifier
+    if (args.length < 3) {
+      System.err.println("Qualifier " + ("--batch".startsWith(args[0]) ? "--batch" : "--parallel") + " should be followed by an input file and a jar file.");
+      System.err.println(synopsis);
+      System.exit(-3);
+    }
+
+    // If the input file does not exist, fatal error
+    if (!new File(args[1]).isFile()) {
+      System.err.println("Could not read input file: " + args[1]);
+      System.exit(-7);
+    }
+
+    batchFile = args[1];
+    parallelFlag = "--parallel".startsWith(args[0]);
+    return Arrays.copyOfRange(args, 2, args.length);
+  }
+
+  /**
+   * processServerQualifier() function
+   *
+   * Processes server qualifier
+   *
+   * @param args Array of command line arguments
+   * @return The command line arguments following the address
+   */
+  public static String[] processServerQualifier(String[] args) {
+    // The address and a jar file must follow the server qualifier
+    if (args.length < 3) {
+      System.err.println("Qualifier --server should be followed by an address and a jar file.");
+      System.err.println(synopsis);
+      System.exit(-3);
+    }
+
+    serverAddress = args[1];
+    return Arrays.copyOfRange(args, 2, args.length);
+  }
+
+  /**
+   * processColumnsQualifier() function
+   *
+   * Processes columns qualifier
+   *
+   * @param args Array of command line arguments
+   * @return The command line arguments following the expression
+   */
+  public static String[] processColumnsQualifier(String[] args) {
+    // The CSV file, the expression and a jar file must follow the columns qualifier
+    if (args.length < 4) {
+      System.err.println("Qualifier --columns should be followed by a CSV file, an expression and a jar file.");
+      System.err.println(synopsis);
+      System.exit(-3);
+    }
+
+    // If the CSV file does not exist, fatal error
+    if (!new File(args[1]).isFile()) {
+      System.err.println("Could not read input file: " + args[1]);
+      System.exit(-7);
+    }
+
+    columnsFile = args[1];
+    columnsExpression = args[2];
+    return Arrays.copyOfRange(args, 3, args.length);
   }
 
   /**
@@ -242,19 +383,21 @@ public class Main {
    */
   public static void verifyJarFile(String[] args) {
     try {
-      if (args[jarIndex].endsWith(".jar")) {
-        File jarFile = new File(args[jarIndex]);
+      for (String name : args[jarIndex].split(File.pathSeparator)) {
+        if (name.endsWith(".jar")) {
+          File jarFile = new File(name);
 
-        // If .jar file does not exist, fatal error
-        if (!jarFile.exists()) {
-          System.err.println("Could not load jar file: " + args[jarIndex]);
-          System.exit(-5);
+          // If .jar file does not exist, fatal error
+          if (!jarFile.exists()) {
+            System.err.println("Could not load jar file: " + name);
+            System.exit(-5);
+          }
+        }
+        // If user passes a non .jar file as the first argument, fatal error
+        else {
+          System.err.println("This program requires a jar file as the first command line argument (after any qualifiers).");
+          System.exit(-3);
         }
-      }
-      // If user passes a non .jar file as the first argument, fatal error
-      else {
-        System.err.println("This program requires a jar file as the first command line argument (after any qualifiers).");
-        System.exit(-3);
       }
 
       jarFile = args[jarIndex];
@@ -265,7 +408,7 @@ public class Main {
   /**
    * verifyClassName() function
    *
-   * Verifies that the passed class name exists in the .jar file. If the class name does exist,
+   * Verifies that each passed class name exists in one of the .jar files
    *
    * @param args Array of command line arguments
    */
@@ -276,20 +419,13 @@ public class Main {
         className = args[classIndex];
       }
 
-      JarFile jarName = new JarFile(args[jarIndex]);
-      Enumeration allEntries = jarName.entries();
-      while (allEntries.hasMoreElements()) {
-        JarEntry entry = (JarEntry) allEntries.nextElement();
-        String name = entry.getName();
-
-        // If the passed class name argument matches one of the class files in the .jar file, begin normal program execution
-        if (name.equals(className+".class")) {
-          return;
-        }
+      // The jar files are opened once, by the class loader that loads the classes afterwards
+      jar = new ProcessJar(jarFiles());
 
-        // If there are no more class files to parse through in the .jar file and the class name argument has not been matched, fatal error
-        if (!name.equals(className) && !allEntries.hasMoreElements()) {
-          System.err.println("Could not find class: " + args[classIndex]);
+      // If a passed class name argument matches none of the class files in the .jar files, fatal error
+      for (String name : classNames()) {
+        if (!jar.hasClass(name)) {
+          System.err.println("Could not find class: " + name);
           System.exit(-6);
         }
       }
@@ -297,19 +433,52 @@ public class Main {
     catch(Exception e) {System.out.println(e.getMessage());}
   }
 
+  /**
+   * jarFiles function
+   *
+   * @return The names of the .jar files passed
+   */
+  private static String[] jarFiles() {
+    return jarFile.split(File.pathSeparator);
+  }
+
+  /**
+   * classNames function
+   *
+   * @return The names of the classes to load, in order of precedence
+   */
+  private static String[] classNames() {
+    return className.split(",");
+  }
+
   /**
    * printStartUp function
    *
    * Called during normal program execution
    */
   public static void printStartUp() {
-    System.out.println("q           : Quit the program.");
-    System.out.println("v           : Toggle verbose mode (stack traces).");
-    System.out.println("f           : List all known functions.");
-    System.out.println("?           : Print this helpful text.");
-    System.out.println("<expression>: Evaluate the expression.");
-    System.out.println("Expressions can be integers, floats, strings (surrounded in double quotes) or function");
-    System.out.println("calls of the form '(identifier {expression}*)'.");
+    printStartUp(System.out);
+  }
+
+  /**
+   * printStartUp function
+   *
+   * Prints the list of commands to a stream
+   *
+   * @param out The stream the commands are printed to
+   */
+  public static void printStartUp(PrintStream out) {
+    out.println("q           : Quit the program.");
+    out.println("v           : Toggle verbose mode (stack traces).");
+    out.println("f           : List all known functions.");
+    out.println("s           : Print call counts and latencies of the functions called so far.");
+    out.println("m           : Toggle memoization of pure function calls.");
+    out.println("p           : Toggle concurrent evaluation of slow function arguments.");
+    out.println("t [f] <ms>  : Time out expressions, or calls of function f, after <ms> milliseconds (0: never).");
+    out.println("?           : Print this helpful text.");
+    out.println("<expression>: Evaluate the expression.");
+    out.println("Expressions can be integers, floats, strings (surrounded in double quotes) or function");
+    out.println("calls of the form '(identifier {expression}*)'.");
   }
 
   /**
@@ -322,14 +491,30 @@ public class Main {
     System.out.println("  methods");
     System.out.println("  methods { -h | -? | --help }+");
     System.out.println("  methods {-v --verbose}* <jar-file> [<class-name>]");
+    System.out.println("  methods {--batch | --parallel} <input-file> {-v --verbose}* <jar-file> [<class-name>]");
+    System.out.println("  methods --server <address> {-v --verbose}* <jar-file> [<class-name>]");
+    System.out.println("  methods --columns <csv-file> <expression> {-v --verbose}* <jar-file> [<class-name>]");
     System.out.println("Arguments:");
-    System.out.println("  <jar-file>:   The .jar file that contains the class to load (see next line).");
+    System.out.println("  <jar-file>:   The .jar file that contains the class to load (see next line). Several may be separated by '" + File.pathSeparator + "'.");
     System.out.println("  <class-name>: The fully qualified class name containing public static command methods to call. [Default=\"Commands\"]");
+    System.out.println("                Several may be separated by ','; the first class with a matching method is called, and");
+    System.out.println("                (<class>.<method> ...) calls the method of the class with that simple name.");
+    System.out.println("  <input-file>: A file with one line of input per line, evaluated as if it was entered.");
+    System.out.println("  <address>:    A port number on the loopback interface, or the path of a Unix-domain socket to create.");
+    System.out.println("  <csv-file>:   A file of comma-separated values whose first line names the columns.");
+    System.out.println("  <expression>: A function call evaluated for every row of <csv-file>, referring to its columns as $<name>.");
     System.out.println("Qualifiers:");
+    System.out.println("  --batch:      Evaluate the lines of <input-file> without prompts, then exit.");
+    System.out.println("  --parallel:   Like --batch, but evaluate the lines on all processors. The output stays in input order.");
+    System.out.println("  --server:     Answer each line received on <address> with the output it would print when entered.");
+    System.out.println("  --columns:    Print the value of <expression> for every row of <csv-file>, computed a column at a time on all processors.");
     System.out.println("  -v --verbose: Print out detailed errors, warning, and tracking.");
     System.out.println("  -h -? --help: Print out a detailed help message.");
     System.out.println("Single-char qualifiers may be grouped; long qualifiers may be truncated to unique prefixes and are not case sensitive.");
     System.out.println();
     System.out.println("This program interprets commands of the format '(<method> {arg}*)' on the command line, finds corresponding methods in <class-name>, and executes them, printing the result to sysout.");
+    System.out.println("In the REPL and with --server, changes to <jar-file> are loaded without restarting; lines already being evaluated finish with the previous version.");
+    System.out.println("Expressions, and each row with --columns, time out after -Dmethods.timeout=<ms> milliseconds if it is set; the 't' command changes the timeouts.");
+    System.out.println("Only functions listed in -Dmethods.pure=<f>,<g>,... or annotated @Pure are folded, shared and memoized.");
   }
 }
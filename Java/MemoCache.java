@@ -0,0 +1,230 @@
+package methods;
+
+import java.util.*;
+
+/**
+ * MemoCache class
+ *
+ * Bounded LRU cache of the results of pure method calls, keyed by the resolved method and its argument values
+ *
+ * Only the calls of pure methods are cached. The cache decides with the Purity it is given, which is the same one
+ * the compiler and the parse tree of its interpreter fold and share calls with, so that marking a function pure or
+ * impure applies to all of them at once.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class MemoCache {
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+  public static final long DEFAULT_MAX_BYTES = 64L*1024*1024;
+
+  // Rough per entry cost of the key, the map entry and the boxed values
+  private static final int ENTRY_BYTES = 96;
+
+  private int maxEntries;
+  private long maxBytes;
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private LinkedHashMap<Key, Object> entries = new LinkedHashMap<Key, Object>(64, 0.75f, true);
+  private Purity purity;
+
+  /**
+    * MemoCache constructor, with the default bounds
+    *
+    * @param purity The rules deciding which methods are pure
+    */
+  public MemoCache(Purity purity) {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, purity);
+  }
+
+  /**
+    * MemoCache constructor
+    *
+    * @param maxEntries The largest number of results kept
+    * @param maxBytes The largest estimated size of the results kept
+    * @param purity The rules deciding which methods are pure
+    */
+  public MemoCache(int maxEntries, long maxBytes, Purity purity) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.purity = purity;
+  }
+
+  /**
+    * Marks every overload of a function as pure or impure
+    *
+    * @param name The name of the function
+    * @param pure Whether or not calls of the function may be cached
+    */
+  public void setPure(String name, boolean pure) {
+    this.purity.setPure(name, pure);
+  }
+
+  /**
+    * Determines if the results of a method may be cached
+    *
+    * @param m The invoker of the method
+    * @return Whether or not the method is pure
+    */
+  public boolean isPure(Invoker m) {
+    return this.purity.isPure(m);
+  }
+
+  /**
+    * Returns the rules deciding which methods are pure
+    *
+    * @return The purity rules of this cache
+    */
+  public Purity getPurity() {
+    return this.purity;
+  }
+
+  /**
+    * Returns the cached result of a call
+    *
+    * @param m The invoker of the method
+    * @param args The arguments of the call
+    * @return The result, null if it is not cached
+    */
+  public synchronized Object get(Invoker m, Object[] args) {
+    Object result = this.entries.get(new Key(m, args));
+    if (result == null) {
+      this.misses++;
+    }
+    else {
+      this.hits++;
+    }
+    return result;
+  }
+
+  /**
+    * Caches the result of a call, evicting the least recently used results when the cache is full
+    *
+    * @param m The invoker of the method
+    * @param args The arguments of the call, which must not be changed afterwards
+    * @param result The result of the call
+    */
+  public synchronized void put(Invoker m, Object[] args, Object result) {
+    Key key = new Key(m, args);
+    if (this.entries.put(key, result) == null) {
+      this.bytes += sizeOf(key) + sizeOf(result);
+    }
+
+    Iterator<Map.Entry<Key, Object>> eldest = this.entries.entrySet().iterator();
+    while ((this.entries.size() > this.maxEntries || this.bytes > this.maxBytes) && eldest.hasNext()) {
+      Map.Entry<Key, Object> entry = eldest.next();
+      this.bytes -= sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+      eldest.remove();
+      this.evictions++;
+    }
+  }
+
+  /**
+    * Removes every cached result
+    *
+    */
+  public synchronized void clear() {
+    this.entries.clear();
+    this.bytes = 0;
+  }
+
+  /**
+    * Returns the number of cached results
+    *
+    * @return The number of entries
+    */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+    * Returns the estimated size of the cached results
+    *
+    * @return The size in bytes
+    */
+  public synchronized long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+    * Returns the number of calls answered from the cache
+    *
+    * @return The number of hits
+    */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+    * Returns the number of lookups that found no result
+    *
+    * @return The number of misses
+    */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+    * Returns the number of results evicted to respect the bounds
+    *
+    * @return The number of evictions
+    */
+  public synchronized long getEvictions() {
+    return this.evictions;
+  }
+
+  /**
+    * Estimates the memory held by the key of a cached call
+    *
+    * @param key The key
+    * @return The size in bytes
+    */
+  private static long sizeOf(Key key) {
+    long size = ENTRY_BYTES;
+    for (Object arg : key.args) {
+      size += sizeOf(arg);
+    }
+    return size;
+  }
+
+  /**
+    * Estimates the memory held by a cached value
+    *
+    * @param value The value
+    * @return The size in bytes
+    */
+  private static long sizeOf(Object value) {
+    if (value instanceof String) {
+      return 40 + 2L*((String) value).length();
+    }
+    return 16;
+  }
+
+  /**
+    * Key of a cached call
+    */
+  private static class Key {
+    private final Invoker invoker;
+    private final Object[] args;
+    private final int hash;
+
+    Key(Invoker invoker, Object[] args) {
+      this.invoker = invoker;
+      this.args = args;
+      this.hash = 31*System.identityHashCode(invoker) + Arrays.hashCode(args);
+    }
+
+    public int hashCode() {
+      return this.hash;
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return this.invoker == other.invoker && this.hash == other.hash && Arrays.equals(this.args, other.args);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package methods;
+
+import java.util.*;
+import java.lang.reflect.Method;
+
+/**
+ * MethodIndex class
+ *
+ * Dispatch table for the methods of one or more loaded classes, keyed by function name, arity and argument types
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class MethodIndex {
+  private Class[] classes;
+  private HashMap<String, Invoker> methods;
+
+  /**
+    * MethodIndex constructor
+    *
+    * Scans the declared methods of the class once. Every method is stored under each combination of node types
+    * it accepts, so a call is resolved with a single hash lookup. When several overloads accept the same
+    * combination, the first declared one wins.
+    *
+    * @param cls The class containing all concrete methods
+    */
+  public MethodIndex(Class cls) {
+    this(new Class[] {cls});
+  }
+
+  /**
+    * MethodIndex constructor
+    *
+    * Builds a single table for several classes, so resolving a call costs the same however many classes are
+    * loaded. A function name resolves to the first class, in the given order, with a method accepting the
+    * arguments. Every method is also stored under its name qualified with the simple name of its class, as in
+    * (Commands1.reverse "abc"), which reaches methods hidden by an earlier class.
+    *
+    * @param classes The classes containing all concrete methods, in order of precedence
+    */
+  public MethodIndex(Class[] classes) {
+    this.classes = classes.clone();
+    this.methods = new HashMap<String, Invoker>();
+
+    for (Class cls : classes) {
+      String prefix = cls.getSimpleName() + ".";
+      for (Method item : cls.getDeclaredMethods()) {
+        Class[] paramTypes = item.getParameterTypes();
+        String[][] accepted = new String[paramTypes.length][];
+        for (int i = 0; i < paramTypes.length; i++) {
+          accepted[i] = acceptedTypes(paramTypes[i].getName());
+        }
+        Invoker m = new Invoker(item);
+        addKeys(m, item.getName(), accepted, 0, new String[paramTypes.length]);
+        addKeys(m, prefix + item.getName(), accepted, 0, new String[paramTypes.length]);
+      }
+    }
+  }
+
+  /**
+    * Returns the class this index was built from, the first one if there are several
+    *
+    * @return The class containing all concrete methods
+    */
+  public Class getIndexedClass() {
+    return this.classes[0];
+  }
+
+  /**
+    * Returns the classes this index was built from
+    *
+    * @return The classes containing all concrete methods, in order of precedence
+    */
+  public Class[] getIndexedClasses() {
+    return this.classes.clone();
+  }
+
+  /**
+    * Returns the method matching a function name and the types of its arguments
+    *
+    * @param method The name of the method
+    * @param methodParams The argument nodes of the function node
+    * @return The matching method, null otherwise
+    */
+  public Method lookup(String method, ArrayList<Node> methodParams) {
+    Invoker invoker = resolve(method, methodParams);
+    return invoker == null ? null : invoker.getMethod();
+  }
+
+  /**
+    * Returns the method matching a function name and a list of node types
+    *
+    * @param method The name of the method
+    * @param types The node types of the arguments
+    * @return The matching method, null otherwise
+    */
+  public Method lookup(String method, String[] types) {
+    Invoker invoker = resolve(method, types);
+    return invoker == null ? null : invoker.getMethod();
+  }
+
+  /**
+    * Returns the invoker of the method matching a function name and the types of its arguments
+    *
+    * @param method The name of the method
+    * @param methodParams The argument nodes of the function node
+    * @return The invoker of the matching method, null otherwise
+    */
+  public Invoker resolve(String method, ArrayList<Node> methodParams) {
+    String[] types = new String[methodParams.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = methodParams.get(i).getType();
+    }
+    return resolve(method, types);
+  }
+
+  /**
+    * Returns the invoker of the method matching a function name and a list of node types
+    *
+    * @param method The name of the method
+    * @param types The node types of the arguments
+    * @return The invoker of the matching method, null otherwise
+    */
+  public Invoker resolve(String method, String[] types) {
+    return this.methods.get(key(method, types));
+  }
+
+  /**
+    * Binds the handles of every method in the index, which calls otherwise do when first made
+    *
+    */
+  public void bindAll() {
+    for (Invoker m : this.methods.values()) {
+      m.getHandle();
+    }
+  }
+
+  /**
+    * Returns the number of signatures in the index
+    *
+    * @return The number of keys in the index
+    */
+  public int size() {
+    return this.methods.size();
+  }
+
+  /**
+    * Returns the node types that may be passed for a parameter type
+    *
+    * @param paramType The name of the parameter type
+    * @return The node types accepted for the parameter
+    */
+  private static String[] acceptedTypes(String paramType) {
+    switch (paramType) {
+      case "java.lang.String":
+        return new String[] {"String"};
+      case "java.lang.Integer":
+        return new String[] {"Integer", "int"};
+      case "java.lang.Float":
+        return new String[] {"Float", "float"};
+      default:
+        return new String[] {paramType};
+    }
+  }
+
+  /**
+    * Recursively stores a method under every combination of its accepted node types
+    *
+    * @param m The invoker of the method to be stored
+    * @param name The function name the method is stored under
+    * @param accepted The accepted node types for each parameter
+    * @param pos The parameter currently being expanded
+    * @param types The node types chosen so far
+    */
+  private void addKeys(Invoker m, String name, String[][] accepted, int pos, String[] types) {
+    if (pos == types.length) {
+      this.methods.putIfAbsent(key(name, types), m);
+      return;
+    }
+    for (String type : accepted[pos]) {
+      types[pos] = type;
+      addKeys(m, name, accepted, pos+1, types);
+    }
+  }
+
+  /**
+    * Builds the lookup key of a signature
+    *
+    * @param method The name of the method
+    * @param types The node types of the arguments
+    * @return The key as a String
+    */
+  private static String key(String method, String[] types) {
+    StringBuilder sb = new StringBuilder(method.length() + 8*types.length + 2);
+    sb.append(method).append('(');
+    for (String type : types) {
+      sb.append(type).append(',');
+    }
+    return sb.append(')').toString();
+  }
+}
@@ -0,0 +1,306 @@
+package methods;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+/**
+ * Metrics class
+ *
+ * Counts the calls and failed calls of every method, and keeps latency histograms of method calls and of the
+ * parse, resolve and invoke phases of an entered line
+ *
+ * Everything is recorded in striped counters, so the metrics can stay on. Every call and phase is counted, but
+ * only one in SAMPLE_RATE is timed, since reading the clock costs more than most methods of the bundled Commands
+ * class. The MBean is registered on a background thread, which keeps the JMX start-up cost off the first line.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Metrics implements MetricsMXBean {
+  public static final String OBJECT_NAME = "methods:type=Metrics";
+  public static final int SAMPLE_RATE = 16;
+
+  private static Metrics defaultMetrics;
+
+  private Timer parse = new Timer("parse");
+  private Timer resolve = new Timer("resolve");
+  private Timer invoke = new Timer("invoke");
+  private ConcurrentHashMap<String, Timer> functions = new ConcurrentHashMap<String, Timer>();
+  private Map<Invoker, Timer> invokers = Collections.synchronizedMap(new WeakHashMap<Invoker, Timer>());
+
+  /**
+    * Returns the metrics shared by the whole program, registering them as a platform MBean on first use
+    *
+    * @return The shared metrics
+    */
+  public static synchronized Metrics getDefault() {
+    if (defaultMetrics == null) {
+      Metrics metrics = new Metrics();
+      Thread register = new Thread(() -> {
+        try {
+          ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e) {
+          // Still recorded, only not visible over JMX
+        }
+      }, "metrics-mbean");
+      register.setDaemon(true);
+      register.start();
+      defaultMetrics = metrics;
+    }
+    return defaultMetrics;
+  }
+
+  /**
+    * Returns the counters of a method
+    *
+    * @param m The invoker of the method
+    * @return The counters, shared by every invoker of a method with the same signature
+    */
+  public Timer function(Invoker m) {
+    Timer f = this.invokers.get(m);
+    if (f == null) {
+      f = this.functions.computeIfAbsent(signature(m), Timer::new);
+      this.invokers.put(m, f);
+    }
+    return f;
+  }
+
+  /**
+    * Returns the counters of parsing a line
+    *
+    * @return The counters of the parse phase
+    */
+  public Timer getParseTimer() {
+    return this.parse;
+  }
+
+  /**
+    * Returns the counters of resolving and compiling a parsed line
+    *
+    * @return The counters of the resolve phase
+    */
+  public Timer getResolveTimer() {
+    return this.resolve;
+  }
+
+  /**
+    * Returns the counters of evaluating a compiled line
+    *
+    * @return The counters of the invoke phase
+    */
+  public Timer getInvokeTimer() {
+    return this.invoke;
+  }
+
+  /**
+    * Returns the number of calls of each method
+    *
+    * @return The counts keyed by method signature
+    */
+  public Map<String, Long> getCallCounts() {
+    TreeMap<String, Long> counts = new TreeMap<String, Long>();
+    for (Timer f : this.functions.values()) {
+      counts.put(f.name, f.calls.sum());
+    }
+    return counts;
+  }
+
+  /**
+    * Returns the number of failed calls of each method
+    *
+    * @return The counts keyed by method signature
+    */
+  public Map<String, Long> getErrorCounts() {
+    TreeMap<String, Long> counts = new TreeMap<String, Long>();
+    for (Timer f : this.functions.values()) {
+      counts.put(f.name, f.errors.sum());
+    }
+    return counts;
+  }
+
+  /**
+    * Returns the mean time of the sampled calls of each method, leaving out methods with no sampled call
+    *
+    * @return The means in nanoseconds keyed by method signature
+    */
+  public Map<String, Long> getCallMeanNanos() {
+    TreeMap<String, Long> means = new TreeMap<String, Long>();
+    for (Timer f : this.functions.values()) {
+      if (f.latency.getCount() > 0) {
+        means.put(f.name, f.latency.getMean());
+      }
+    }
+    return means;
+  }
+
+  /**
+    * Returns the 99th percentile of the sampled calls of each method, leaving out methods with no sampled call
+    *
+    * @return The percentiles in nanoseconds keyed by method signature
+    */
+  public Map<String, Long> getCallP99Nanos() {
+    TreeMap<String, Long> percentiles = new TreeMap<String, Long>();
+    for (Timer f : this.functions.values()) {
+      if (f.latency.getCount() > 0) {
+        percentiles.put(f.name, f.latency.getPercentile(99));
+      }
+    }
+    return percentiles;
+  }
+
+  /**
+    * Returns the number of lines that went through each phase
+    *
+    * @return The counts keyed by phase
+    */
+  public Map<String, Long> getPhaseCounts() {
+    LinkedHashMap<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (Timer phase : new Timer[] {this.parse, this.resolve, this.invoke}) {
+      counts.put(phase.name, phase.calls.sum());
+    }
+    return counts;
+  }
+
+  /**
+    * Returns the mean time of the sampled lines of each phase, leaving out phases with no sampled line
+    *
+    * @return The means in nanoseconds keyed by phase
+    */
+  public Map<String, Long> getPhaseMeanNanos() {
+    LinkedHashMap<String, Long> means = new LinkedHashMap<String, Long>();
+    for (Timer phase : new Timer[] {this.parse, this.resolve, this.invoke}) {
+      if (phase.latency.getCount() > 0) {
+        means.put(phase.name, phase.latency.getMean());
+      }
+    }
+    return means;
+  }
+
+  /**
+    * Returns the 99th percentile of the sampled lines of each phase, leaving out phases with no sampled line
+    *
+    * @return The percentiles in nanoseconds keyed by phase
+    */
+  public Map<String, Long> getPhaseP99Nanos() {
+    LinkedHashMap<String, Long> percentiles = new LinkedHashMap<String, Long>();
+    for (Timer phase : new Timer[] {this.parse, this.resolve, this.invoke}) {
+      if (phase.latency.getCount() > 0) {
+        percentiles.put(phase.name, phase.latency.getPercentile(99));
+      }
+    }
+    return percentiles;
+  }
+
+  /**
+    * Returns the report printed by the REPL, with a - for the times of a method or phase with no sampled call
+    *
+    * @return The report
+    */
+  public String report() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-32s %12s %8s %12s %12s%n", "Function", "Calls", "Errors", "Mean(ns)", "p99(ns)"));
+    for (Timer f : new TreeMap<String, Timer>(this.functions).values()) {
+      report.append(line(f));
+    }
+    report.append(String.format("%-32s %12s %8s %12s %12s%n", "Phase", "Lines", "Errors", "Mean(ns)", "p99(ns)"));
+    for (Timer phase : new Timer[] {this.parse, this.resolve, this.invoke}) {
+      report.append(line(phase));
+    }
+    return report.toString();
+  }
+
+  /**
+    * Forgets everything recorded so far
+    *
+    */
+  public void reset() {
+    for (Timer f : this.functions.values()) {
+      f.reset();
+    }
+    for (Timer phase : new Timer[] {this.parse, this.resolve, this.invoke}) {
+      phase.reset();
+    }
+  }
+
+  /**
+    * Formats the report line of a method or phase
+    *
+    * @param t The counters of the method or phase
+    * @return The report line
+    */
+  private static String line(Timer t) {
+    // Only one call in SAMPLE_RATE is timed, so a rarely called method may have no sampled call yet
+    boolean timed = t.latency.getCount() > 0;
+    String mean = timed ? Long.toString(t.latency.getMean()) : "-";
+    String p99 = timed ? Long.toString(t.latency.getPercentile(99)) : "-";
+    return String.format("%-32s %12d %8d %12s %12s%n", t.name, t.calls.sum(), t.errors.sum(), mean, p99);
+  }
+
+  /**
+    * Returns the signature a method is reported under, e.g. add(int,int)
+    *
+    * @param m The invoker of the method
+    * @return The signature
+    */
+  private static String signature(Invoker m) {
+    StringJoiner params = new StringJoiner(",", m.getMethod().getName() + "(", ")");
+    for (Class c : m.getMethod().getParameterTypes()) {
+      params.add(c.getSimpleName());
+    }
+    return params.toString();
+  }
+
+  /**
+    * Counters of one method or phase
+    */
+  public static class Timer {
+    // Start time of calls that are not timed
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Histogram latency = new Histogram();
+
+    Timer(String name) {
+      this.name = name;
+    }
+
+    /**
+      * Counts a call or phase that is about to start
+      *
+      * @return The start time, NOT_SAMPLED if it is not timed
+      */
+    public long start() {
+      this.calls.increment();
+      if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+        return NOT_SAMPLED;
+      }
+      return System.nanoTime();
+    }
+
+    /**
+      * Records the end of a call or phase
+      *
+      * @param start The start time returned by start()
+      * @param failed Whether or not it threw
+      */
+    public void finish(long start, boolean failed) {
+      if (start != NOT_SAMPLED) {
+        this.latency.record(System.nanoTime() - start);
+      }
+      if (failed) {
+        this.errors.increment();
+      }
+    }
+
+    void reset() {
+      this.calls.reset();
+      this.errors.reset();
+      this.latency.reset();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package methods;
+
+import java.util.Map;
+
+/**
+ * MetricsMXBean interface
+ *
+ * Management interface of the Metrics, registered with the platform MBean server as methods:type=Metrics
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public interface MetricsMXBean {
+
+  /**
+    * Returns the number of calls of each method
+    *
+    * @return The counts keyed by method signature
+    */
+  Map<String, Long> getCallCounts();
+
+  /**
+    * Returns the number of failed calls of each method
+    *
+    * @return The counts keyed by method signature
+    */
+  Map<String, Long> getErrorCounts();
+
+  /**
+    * Returns the mean time of the sampled calls of each method, leaving out methods with no sampled call
+    *
+    * @return The means in nanoseconds keyed by method signature
+    */
+  Map<String, Long> getCallMeanNanos();
+
+  /**
+    * Returns the 99th percentile of the sampled calls of each method, leaving out methods with no sampled call
+    *
+    * @return The percentiles in nanoseconds keyed by method signature
+    */
+  Map<String, Long> getCallP99Nanos();
+
+  /**
+    * Returns the number of lines that went through each phase: parse, resolve and invoke
+    *
+    * @return The counts keyed by phase
+    */
+  Map<String, Long> getPhaseCounts();
+
+  /**
+    * Returns the mean time of the sampled lines of each phase, leaving out phases with no sampled line
+    *
+    * @return The means in nanoseconds keyed by phase
+    */
+  Map<String, Long> getPhaseMeanNanos();
+
+  /**
+    * Returns the 99th percentile of the sampled lines of each phase, leaving out phases with no sampled line
+    *
+    * @return The percentiles in nanoseconds keyed by phase
+    */
+  Map<String, Long> getPhaseP99Nanos();
+
+  /**
+    * Returns the report printed by the REPL
+    *
+    * @return The report
+    */
+  String report();
+
+  /**
+    * Forgets everything recorded so far
+    *
+    */
+  void reset();
+}
@@ -13,6 +13,12 @@ public class Node {
   private String data;
   // Types: func, int, float, string
   private String type;
+  private NodeType tag;
+  // Typed value slots, filled when a literal is first read or when a call result is stored
+  private boolean parsed;
+  private int intValue;
+  private float floatValue;
+  private Object value;
   private int nodeIndex;
 
   /**
@@ -24,6 +30,7 @@ public class Node {
     this.children = new ArrayList<Node>();
     this.data = "null";
     this.type = null;
+    this.tag = null;
     this.nodeIndex = -1;
   }
 
@@ -40,6 +47,24 @@ public class Node {
     this.children = new ArrayList<Node>();
     this.data = data;
     this.type = type;
+    this.tag = NodeType.of(type);
+    this.nodeIndex = nodeIndex;
+  }
+
+  /**
+    * Node constructor
+    *
+    * @param parent The parent of this node
+    * @param data The data of this node
+    * @param tag The type tag of this node
+    * @param nodeIndex The index of this node
+    */
+  public Node(Node parent, String data, NodeType tag, int nodeIndex) {
+    this.parent = parent;
+    this.children = new ArrayList<Node>();
+    this.data = data;
+    this.type = tag.getName();
+    this.tag = tag;
     this.nodeIndex = nodeIndex;
   }
 
@@ -100,6 +125,18 @@ public class Node {
     * @return The data of this node
     */
   public String getData() {
+    if (this.data == null) {
+      switch(this.tag) {
+        case INT:
+          this.data = Integer.toString(this.intValue);
+          break;
+        case FLOAT:
+          this.data = Float.toString(this.floatValue);
+          break;
+        default:
+          this.data = this.value.toString();
+      }
+    }
     return this.data;
   }
 
@@ -110,6 +147,92 @@ public class Node {
     */
   public void setData(String newData) {
     this.data = newData;
+    this.parsed = false;
+    this.value = null;
+  }
+
+  /**
+    * Returns the value of an int node
+    *
+    * @return The int value of this node
+    * @throws NumberFormatException If the data of this node is not an int
+    */
+  public int getInt() {
+    if (!this.parsed) {
+      this.intValue = Integer.parseInt(this.data);
+      this.parsed = true;
+    }
+    return this.intValue;
+  }
+
+  /**
+    * Returns the value of a float node
+    *
+    * @return The float value of this node
+    * @throws NumberFormatException If the data of this node is not a float
+    */
+  public float getFloat() {
+    if (!this.parsed) {
+      this.floatValue = Float.parseFloat(this.data);
+      this.parsed = true;
+    }
+    return this.floatValue;
+  }
+
+  /**
+    * Returns the value of a String node, or the object held by a node of any other returned type
+    *
+    * @return The value of this node
+    */
+  public Object getValue() {
+    return this.tag == NodeType.STRING ? this.data : this.value;
+  }
+
+  /**
+    * Stores an int result in this node
+    *
+    * @param newValue The new value for this node
+    */
+  public void setInt(int newValue) {
+    this.tag = NodeType.INT;
+    this.type = NodeType.INT.getName();
+    this.intValue = newValue;
+    this.parsed = true;
+    this.data = null;
+  }
+
+  /**
+    * Stores a float result in this node
+    *
+    * @param newValue The new value for this node
+    */
+  public void setFloat(float newValue) {
+    this.tag = NodeType.FLOAT;
+    this.type = NodeType.FLOAT.getName();
+    this.floatValue = newValue;
+    this.parsed = true;
+    this.data = null;
+  }
+
+  /**
+    * Stores a result of any other type in this node
+    *
+    * @param newValue The new value for this node
+    * @param newTag The type tag of the value
+    * @param newType The type name of the value
+    */
+  public void setValue(Object newValue, NodeType newTag, String newType) {
+    this.tag = newTag;
+    this.type = newType;
+    this.parsed = false;
+    if (newTag == NodeType.STRING) {
+      this.data = (String) newValue;
+      this.value = null;
+    }
+    else {
+      this.data = null;
+      this.value = newValue;
+    }
   }
 
   /**
@@ -120,6 +243,14 @@ public class Node {
     return this.type;
   }
 
+  /**
+    * Returns the type tag of this node
+    *
+    */
+  public NodeType getTag() {
+    return this.tag;
+  }
+
   /**
     * Sets the type of this node
     *
@@ -127,6 +258,7 @@ public class Node {
     */
   public void setType(String newType) {
     this.type = newType;
+    this.tag = NodeType.of(newType);
   }
 
   /**
@@ -142,6 +274,6 @@ public class Node {
     *
     */
   public String toString(){
-   return ("Node Data: " + this.data + " | Node Type: " + this.type + " | Node Index: " + this.nodeIndex);
+   return ("Node Data: " + getData() + " | Node Type: " + this.type + " | Node Index: " + this.nodeIndex);
   }
 }
@@ -0,0 +1,71 @@
+package methods;
+
+/**
+ * NodeType enum
+ *
+ * Type tags of parse tree nodes. Values returned by a method whose return type has no tag of its own are OTHER.
+ * VARIABLE nodes are the placeholders of prepared expressions, e.g. $x, whose type is declared when they are
+ * compiled.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public enum NodeType {
+  FUNC("func"),
+  INT("int"),
+  FLOAT("float"),
+  STRING("String"),
+  INTEGER("Integer"),
+  FLOAT_OBJECT("Float"),
+  VARIABLE("$"),
+  OTHER(null);
+
+  private final String name;
+
+  /**
+    * NodeType constructor
+    *
+    * @param name The type name used in signatures and error messages
+    */
+  NodeType(String name) {
+    this.name = name;
+  }
+
+  /**
+    * Returns the type name of this tag
+    *
+    * @return The type name, null for OTHER
+    */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+    * Returns the tag of a type name
+    *
+    * @param type The type name
+    * @return The matching tag, OTHER for unknown names and null for null
+    */
+  public static NodeType of(String type) {
+    if (type == null) {
+      return null;
+    }
+    switch (type) {
+      case "func":
+        return FUNC;
+      case "int":
+        return INT;
+      case "float":
+        return FLOAT;
+      case "String":
+        return STRING;
+      case "Integer":
+        return INTEGER;
+      case "Float":
+        return FLOAT_OBJECT;
+      case "$":
+        return VARIABLE;
+      default:
+        return OTHER;
+    }
+  }
+}
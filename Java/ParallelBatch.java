@@ -0,0 +1,161 @@
+package methods;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ParallelBatch class
+ *
+ * Evaluates the lines of a batch file on several threads, writing their output in input order
+ *
+ * Expression lines are grouped into chunks that are evaluated by worker threads, each with an Interpreter of its
+ * own. Command lines (see Interpreter.isCommand) act as barriers: the chunks before them are written first, then
+ * the command runs on the calling thread and its settings apply to the chunks after it.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ParallelBatch {
+  public static final int CHUNK_LINES = 2048;
+
+  private ProcessJar jar;
+  private Class[] classes;
+  private int threads;
+  private Watchdog watchdog;
+
+  /**
+    * ParallelBatch constructor
+    *
+    * @param jar The processor of the jar file
+    * @param classes The classes containing all concrete methods, in order of precedence
+    * @param threads The number of worker threads
+    */
+  public ParallelBatch(ProcessJar jar, Class[] classes, int threads) {
+    this.jar = jar;
+    this.classes = classes;
+    this.threads = Math.max(threads, 1);
+  }
+
+  /**
+    * Sets the watchdog the lines start with, until a t command changes it
+    *
+    * @param watchdog The watchdog, or null to let every call run until it returns
+    */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+    * Evaluates every line read from a batch file
+    *
+    * @param reader The reader of the batch file
+    * @param out The stream the output is written to
+    * @throws IOException If the batch file cannot be read
+    */
+  public void run(BatchReader reader, PrintStream out) throws IOException {
+    // The combined index is built before the workers share it
+    this.jar.getIndex(this.classes);
+    Interpreter main = new Interpreter(this.jar, this.classes);
+    main.setOut(out);
+    main.setWatchdog(this.watchdog);
+
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads, r -> {
+      Thread t = new Thread(r, "batch-worker");
+      t.setDaemon(true);
+      return t;
+    });
+    ThreadLocal<Interpreter> workers = ThreadLocal.withInitial(() -> new Interpreter(this.jar, this.classes));
+    ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+    try {
+      ArrayList<String> chunk = new ArrayList<String>(CHUNK_LINES);
+      String line;
+      while ((line = reader.nextLine()) != null) {
+        if (Interpreter.isCommand(line)) {
+          submit(pool, workers, chunk, main, pending);
+          chunk = new ArrayList<String>(CHUNK_LINES);
+          drain(pending, out, 0);
+          if (!main.processLine(line)) {
+            return;
+          }
+          continue;
+        }
+
+        chunk.add(line);
+        if (chunk.size() == CHUNK_LINES) {
+          submit(pool, workers, chunk, main, pending);
+          chunk = new ArrayList<String>(CHUNK_LINES);
+          drain(pending, out, 2*this.threads);
+        }
+      }
+      submit(pool, workers, chunk, main, pending);
+      drain(pending, out, 0);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+    * Hands a chunk of expression lines to the worker threads
+    *
+    * @param pool The worker threads
+    * @param workers The Interpreter of each worker thread
+    * @param chunk The lines of the chunk
+    * @param main The Interpreter holding the current settings
+    * @param pending The output of the chunks not yet written
+    */
+  private static void submit(ExecutorService pool, ThreadLocal<Interpreter> workers, ArrayList<String> chunk, Interpreter main, ArrayDeque<Future<byte[]>> pending) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    boolean verbose = main.isVerbose();
+    Purity purity = main.getPurity();
+    MemoCache memo = main.getMemoCache();
+    SiblingScheduler siblings = main.getSiblingScheduler();
+    Watchdog watchdog = main.getWatchdog();
+    pending.add(pool.submit(() -> {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(chunk.size()*16);
+      PrintStream chunkOut = new PrintStream(bytes);
+      Interpreter worker = workers.get();
+      worker.setOut(chunkOut);
+      worker.setVerbose(verbose);
+      worker.setPurity(purity);
+      worker.setMemoCache(memo);
+      worker.setSiblingScheduler(siblings);
+      worker.setWatchdog(watchdog);
+      for (String line : chunk) {
+        worker.processLine(line);
+      }
+      chunkOut.flush();
+      return bytes.toByteArray();
+    }));
+  }
+
+  /**
+    * Writes the output of finished chunks in input order
+    *
+    * Callers keep a few chunks in flight per thread, which keeps the threads busy without buffering the whole output.
+    *
+    * @param pending The output of the chunks not yet written
+    * @param out The stream the output is written to
+    * @param keep The number of chunks that may stay in flight
+    */
+  static void drain(ArrayDeque<Future<byte[]>> pending, PrintStream out, int keep) {
+    while (!pending.isEmpty() && (pending.size() > keep || pending.peek().isDone())) {
+      try {
+        out.write(pending.poll().get());
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+      catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -11,6 +11,8 @@ import java.text.*;
 public class ParseTree {
   private Node root;
   private Node currentNode;
+  private ExpressionParser parser = new ExpressionParser();
+  private NodeBuilder builder = new NodeBuilder();
 
 
   /**
@@ -130,13 +132,22 @@ public class ParseTree {
   *@return The arrow as a String
   */
   public String getArrow(int s){
-	  String arrow = "";
-	  for(int i = 1; i < s; i++){
-		  arrow = arrow + "-";
-	  }
-	  arrow = arrow + "^\n";
+	  return arrow(s);
+  }
 
-	  return arrow;
+  /**
+  *Builds an appropriately formatted arrow for error printing
+  *
+  *@param s The number of dashes in the arrow
+  *@return The arrow as a String
+  */
+  public static String arrow(int s){
+	  char[] arrow = new char[Math.max(s, 1) + 1];
+	  Arrays.fill(arrow, '-');
+	  arrow[arrow.length-2] = '^';
+	  arrow[arrow.length-1] = '\n';
+
+	  return new String(arrow);
   }
 
   /**
@@ -146,344 +157,57 @@ public class ParseTree {
   *@throws ParseException if an error occurs in parsing
   */
   public void buildTree (String exp) throws ParseException{
-    root = new Node();
-    this.currentNode = root;
-    int index = 0;
-    int bracketCount = 0;
-    boolean stringFlag = false;
-    int stringIndex = -1;
-    boolean functionFlag = false;
-    int functionIndex = -1;
-    boolean rootFlag = false;
-    boolean numFlag = false;
-    int numIndex = -1;
-    int floatCount = 0;
-    ArrayList<Character> charArray = new ArrayList<Character>();
-
-    for (char i : exp.toCharArray()) {
-      if (i == '(') {
-		  if(stringFlag && !functionFlag){
-			  charArray.add(i);
-		  }
-
-		  else if(bracketCount == 0 && rootFlag){ //Left bracket is found after expression
-			 System.out.println("Encountered incorrect token at offset " + (index));
-			System.out.println(exp);
-			System.out.print(getArrow(index+1));
-			bracketCount = 0;
-			stringFlag = false;
-			  throw new ParseException("Encountered incorrect token at offset " + (index), index);
-		 }
-
-		 else if(functionFlag){ //Right bracket cannot be found in function name
-			System.out.println("Encountered incorrect bracket at offset " + (index));
-			System.out.println(exp);
-			System.out.print(getArrow(index+1));
-			bracketCount = 0;
-			  throw new ParseException("Encountered incorrect bracket at offset " + (index), index);
-		 }
-
-		 else{
-			functionFlag = true;
-			functionIndex = index;
-			bracketCount++;
-		 }
-      }
-
-      else if (i == ')') {
-		  if(bracketCount == 0 && rootFlag){ //Right bracket found after expression is finished
-        System.out.println("Encountered incorrect token at offset " + (index));
-  			System.out.println(exp);
-  			System.out.print(getArrow(index+1));
-  			bracketCount = 0;
-  			stringFlag = false;
-  			  throw new ParseException("Encountered incorrect token at offset " + (index), index);
-		  }
-
-		 if(!stringFlag){
-        bracketCount--;
-		 }
-
-     if (numFlag) {
-      numFlag = false;
-      floatCount = 0;
-
-      String st = "";
-      for (char j : charArray) {
-        st += Character.toString(j);
-      }
-
-      Node n;
-
-      if (st.contains("."))
-        n = new Node(currentNode, st, "float", index-charArray.size());
-
-      else
-        n = new Node(currentNode, st, "int", index-charArray.size());
-
-      currentNode.addChild(n);
-      if (!rootFlag) {
-        root = currentNode;
-        rootFlag = true;
-      }
-      charArray = new ArrayList<Character>();
+    try {
+      this.root = this.builder.get(this.parser.parse(exp, this.builder));
     }
-
-		if(functionFlag && stringFlag){
-			functionFlag = false;
-			stringFlag = false;
-			bracketCount--;
-			String st = "";
-
-			for(char j : charArray){
-				st += Character.toString(j);
-			}
-
-			Node n = new Node(currentNode, st, "func", index-charArray.size());
-
-			if(!rootFlag){
-				root = n;
-				rootFlag = true;
-			}
-			else{
-				currentNode.addChild(n);
-			}
-
-			charArray = new ArrayList<Character>();
-
-
-		}
-
-		else if(stringFlag && !functionFlag){
-			charArray.add(i);
-      index++;
-			continue;
-		}
-
-    if (currentNode == root){
-      if(bracketCount < 0){ //No left bracket
-  		  System.out.println("Encountered incorrect bracket at offset " + (index));
-  		  System.out.println(exp);
-  		  System.out.print(getArrow(index+1));
-  			  throw new ParseException("Encountered incorrect bracket at offset " + (index), index);
-		  }
-			index++;
-      continue;
-		}
-
-    else{currentNode = currentNode.getParent();}
+    catch (ParseException e) {
+      this.root = this.builder.get(0);
+      throw e;
     }
-
-    // If element is a quotation mark
-    else if (i == '\"') {
-      if(bracketCount == 0 && rootFlag){ //Quotation mark is found after expression
-        System.out.println("Encountered incorrect token at offset " + (index));
-        System.out.println(exp);
-        System.out.print(getArrow(index+1));
-        bracketCount = 0;
-        stringFlag = false;
-          throw new ParseException("Encountered incorrect token at offset " + (index), index);
-		 }
-
-		 if(functionFlag){ //No quotation marks in function
-        System.out.println("Encountered incorrect token at offset " + (index));
-        System.out.println(exp);
-        System.out.print(getArrow(index+1));
-        bracketCount = 0;
-        stringFlag = false;
-        throw new ParseException("Encountered incorrect token at offset " + (index), index);
-		 }
-
-     if (stringFlag) {
-        stringFlag = false;
-        stringIndex = index;
-
-        String st = "";
-        for (char j : charArray) {
-          st += Character.toString(j);
-        }
-
-        Node n = new Node(currentNode, st, "String", index-charArray.size());
-        currentNode.addChild(n);
-        if (!rootFlag) {
-          root = currentNode;
-          rootFlag = true;
-        }
-
-        charArray = new ArrayList<Character>();
-      }
-      else {
-        stringFlag = true;
-        stringIndex = index;
-      }
+    finally {
+      this.currentNode = this.root;
     }
+  }
 
-      // If element is neither whitespace or a quotation
-      else if (!(i == ' ') && !(i == '\t')) {
-		 if(bracketCount == 0 && rootFlag){ //Something appeared after the first function is evaluated
-			 System.out.println("Encountered incorrect token at offset " + (index));
-			System.out.println(exp);
-			System.out.print(getArrow(index+1));
-			bracketCount = 0;
-			stringFlag = false;
-			  throw new ParseException("Encountered incorrect token at offset " + (index), index);
-		 }
-        if (functionFlag) {
-          if (!(Character.isLetter(i)) && !(Character.toString(i).equals("_")) && !(Character.isDigit(i))) { //Incorrect symbol for function name
-			  System.out.println("Encountered incorrect token at offset " + (index));
-			System.out.println(exp);
-			System.out.print(getArrow(index+1));
-			bracketCount = 0;
-			stringFlag = false;
-			  throw new ParseException("Encountered incorrect token at offset " + (index), index);
-          }
-
-          stringFlag = true;
-		  stringIndex = index;
-          charArray.add(i);
-        }
-
-        else if (stringFlag) {
-          charArray.add(i);
-        }
-
-		else if(Character.toString(i).equals("-") && !numFlag){
-			numFlag = true;
-			numIndex = index;
-			charArray.add(i);
-		}
-
-		else if(Character.toString(i).equals("-") && numFlag){
-		  System.out.println("Encountered incorrect token at offset " + (index));
-		  System.out.println(exp);
-		  System.out.print(getArrow(index+1));
-		  bracketCount = 0;
-		  throw new ParseException("Encountered incorrect token at offset " + (index), index);
-		}
-
-        else if (Character.isDigit(i) && numFlag) {
-          charArray.add(i);
-        }
-
-        else if (Character.isDigit(i) && !numFlag) {
-          numFlag = true;
-		  numIndex = index;
-          charArray.add(i);
-        }
-
-        else if (Character.toString(i).equals(".") && !numFlag) {
-          // Illegal float value entry
-		  System.out.println("Encountered incorrect token at offset " + (index));
-		  System.out.println(exp);
-		  System.out.print(getArrow(index+1));
-		  bracketCount = 0;
-			  throw new ParseException("Encountered incorrect token at offset " + (index), index);
-        }
-
-        else if (Character.toString(i).equals(".") && numFlag) {
-			floatCount++;
-			if(floatCount > 1){ //Need to have zero or one periods
-				System.out.println("Encountered incorrect token at offset " + (index));
-			System.out.println(exp);
-			System.out.print(getArrow(index+1));
-			bracketCount = 0;
-			stringFlag = false;
-			throw new ParseException("Encountered incorrect token at offset " + (index), index);
-			}
-          charArray.add(i);
-        }
-
-		else{ //Catch-all for unexpected characters
-			System.out.println("Encountered incorrect token at offset " + (index));
-			System.out.println(exp);
-			System.out.print(getArrow(index+1));
-			bracketCount = 0;
-			stringFlag = false;
-			  throw new ParseException("Encountered incorrect token at offset " + (index), index);
-		}
-      }
-
-      // If element is whitespace
-      else if (i == ' ' || i == '\t') {
-        if (functionFlag && stringFlag) {
-          functionFlag = false;
-          stringFlag = false;
-		  stringIndex = -1;
-
-          String st = "";
-          for (char j : charArray) {
-            st += Character.toString(j);
-          }
-
-          Node n = new Node(currentNode, st, "func", index-charArray.size());
-          currentNode.addChild(n);
-          currentNode = n;
-          if (!rootFlag) {
-            root = currentNode;
-            rootFlag = true;
-          }
-          charArray = new ArrayList<Character>();
-        }
-
-        else if (numFlag) {
-          numFlag = false;
-		  floatCount = 0;
-
-          String st = "";
-          for (char j : charArray) {
-            st += Character.toString(j);
-          }
-
-          Node n;
-          if (st.contains(".")){
-            n = new Node(currentNode, st, "float", index-charArray.size());
-		  }
-
-          else
-            n = new Node(currentNode, st, "int", index-charArray.size());
-
-          currentNode.addChild(n);
-          if (!rootFlag) {
-            root = currentNode;
-            rootFlag = true;
-          }
-          charArray = new ArrayList<Character>();
-        }
-
-        else if (stringFlag) {
-          charArray.add(i);
-        }
+  /**
+  *TreeBuilder creating the Node objects of this tree
+  */
+  private static class NodeBuilder implements TreeBuilder {
+    private ArrayList<Node> nodes = new ArrayList<Node>();
+    private int[] parents = new int[16];
 
+    public int root() {
+      this.nodes.clear();
+      return add(new Node(), -1);
+    }
 
-      }
+    public int node(int parent, NodeType tag, char[] text, int length, int offset) {
+      return add(new Node(get(parent), new String(text, 0, length), tag, offset), parent);
+    }
 
-	  if(bracketCount < 0){ //missing left bracket
-		  System.out.println("Encountered incorrect bracket at offset " + (index));
-		  System.out.println(exp);
-		  System.out.print(getArrow(index));
-		  throw new ParseException("Encountered incorrect bracket at offset " + (index), index);
-	  }
+    public void addChild(int parent, int child) {
+      get(parent).addChild(get(child));
+    }
 
-      index++;
+    public int parent(int node) {
+      return this.parents[node];
     }
 
-    if (stringFlag || bracketCount > 0) {
-      if (stringFlag) { //missing end quotation mark
-		  String message = "Encountered end-of-input while reading string beginning at offset "  + stringIndex;
-		  System.out.println(message + " at offset " + (index));
-		  System.out.println(exp);
-		  System.out.print(getArrow(index+1));
-		  throw new ParseException(message, index);
+    public void close(int node) {
     }
 
-	  else if (bracketCount > 0){ //missing end bracket
-		  String message = "Encountered end-of-input while reading string beginning at offset " + functionIndex;
-		  System.out.println(message + " at offset " + (index));
-		  System.out.println(exp);
-		  System.out.print(getArrow(index+1));
-		  throw new ParseException(message, index);
-	  }
+    private int add(Node n, int parent) {
+      int id = this.nodes.size();
+      if (id == this.parents.length) {
+        this.parents = Arrays.copyOf(this.parents, id*2);
+      }
+      this.parents[id] = parent;
+      this.nodes.add(n);
+      return id;
+    }
 
+    public Node get(int node) {
+      return node < 0 ? null : this.nodes.get(node);
     }
   }
 }
@@ -0,0 +1,143 @@
+package methods;
+
+import java.lang.invoke.*;
+import java.util.*;
+
+/**
+ * PreparedExpression class
+ *
+ * An expression with variables ($x) whose methods are resolved and bound for the declared types of its variables,
+ * ready to be evaluated any number of times with different values
+ *
+ * Like a CompiledExpression, a prepared expression is immutable: the values of one evaluation are passed along the
+ * call stack, so it may be evaluated from any number of threads at once.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class PreparedExpression {
+  private final MethodHandle handle;
+  private final String type;
+  private final String exp;
+  private final String[] names;
+  private final Class[] types;
+
+  /**
+    * PreparedExpression constructor
+    *
+    * @param handle A handle taking the values of the variables as an Object[] that evaluates the expression
+    * @param type The node type of the result
+    * @param exp The entered expression
+    * @param names The names of the variables, without their $
+    * @param types The types of the variables: int, float or String
+    */
+  public PreparedExpression(MethodHandle handle, String type, String exp, String[] names, Class[] types) {
+    this.handle = handle;
+    this.type = type;
+    this.exp = exp;
+    this.names = names.clone();
+    this.types = types.clone();
+  }
+
+  /**
+    * Evaluates the expression
+    *
+    * @param values The values of the variables, in the order they were declared in; Integer for int variables and
+    * Float for float variables
+    * @return The result of the expression
+    * @throws IllegalArgumentException If the number or types of the values do not match the variables
+    * @throws ArithmeticException When a method call fails
+    * @throws CallTimeoutException When a method call guarded by a Watchdog does not finish in time
+    */
+  public Object evaluate(Object... values) {
+    if (values.length != this.names.length) {
+      throw new IllegalArgumentException("Expected " + this.names.length + " values, got " + values.length);
+    }
+    for (int i = 0; i < values.length; i++) {
+      if (!accepts(this.types[i], values[i])) {
+        throw new IllegalArgumentException("Expected " + this.types[i].getName() + " for $" + this.names[i] + ", got " + values[i]);
+      }
+    }
+    try {
+      return (Object) this.handle.invokeExact(values);
+    }
+    catch (CallTimeoutException e) {
+      throw e;
+    }
+    catch (Throwable e) {
+      throw new ArithmeticException();
+    }
+  }
+
+  /**
+    * Evaluates the expression with the values of the variables looked up by name
+    *
+    * @param values The values of the variables, keyed by their names without their $
+    * @return The result of the expression
+    * @throws IllegalArgumentException If a variable has no value or a value has the wrong type
+    * @throws ArithmeticException When a method call fails
+    */
+  public Object evaluate(Map<String, ?> values) {
+    Object[] frame = new Object[this.names.length];
+    for (int i = 0; i < frame.length; i++) {
+      if (!values.containsKey(this.names[i])) {
+        throw new IllegalArgumentException("No value for $" + this.names[i]);
+      }
+      frame[i] = values.get(this.names[i]);
+    }
+    return evaluate(frame);
+  }
+
+  /**
+    * Returns the names of the variables
+    *
+    * @return The names without their $, in the order values are passed in
+    */
+  public String[] getVariableNames() {
+    return this.names.clone();
+  }
+
+  /**
+    * Returns the position of a variable in the values passed to evaluate
+    *
+    * @param name The name of the variable, without its $
+    * @return The position, -1 if there is no such variable
+    */
+  public int indexOf(String name) {
+    return Arrays.asList(this.names).indexOf(name);
+  }
+
+  /**
+    * Returns the node type of the result
+    *
+    * @return The type of the result
+    */
+  public String getType() {
+    return this.type;
+  }
+
+  /**
+    * Returns the expression this was prepared from
+    *
+    * @return The entered expression
+    */
+  public String getExpression() {
+    return this.exp;
+  }
+
+  /**
+    * Determines if a value may be bound to a variable of a type
+    *
+    * @param type The type of the variable: int, float or String
+    * @param value The value
+    * @return Whether or not the value has that type
+    */
+  private static boolean accepts(Class type, Object value) {
+    if (type == int.class) {
+      return value instanceof Integer;
+    }
+    if (type == float.class) {
+      return value instanceof Float;
+    }
+    return value == null || type.isInstance(value);
+  }
+}
@@ -15,7 +15,9 @@ import java.lang.reflect.Method;
  * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
  */
 public class ProcessJar {
-  private String jar;
+  private String[] jars;
+  private URLClassLoader loader;
+  private HashMap<List<Class>, MethodIndex> indexes = new HashMap<List<Class>, MethodIndex>();
 
   /**
     * ProcessJar constructor
@@ -23,7 +25,28 @@ public class ProcessJar {
     * @param jarName The name of the jar file
     */
   public ProcessJar(String jarName) {
-    this.jar = jarName;
+    this(new String[] {jarName});
+  }
+
+  /**
+    * ProcessJar constructor
+    *
+    * Classes are loaded from the jar files in order, so a class found in an earlier jar hides the classes of
+    * the same name in later ones.
+    *
+    * @param jarNames The names of the jar files
+    */
+  public ProcessJar(String[] jarNames) {
+    this.jars = jarNames.clone();
+  }
+
+  /**
+    * Returns the names of the jar files
+    *
+    * @return The names, in the order classes are looked up in
+    */
+  public String[] getJarNames() {
+    return this.jars.clone();
   }
 
   /**
@@ -36,17 +59,73 @@ public class ProcessJar {
   public Class accessJar(String className) {
     Class cls = null;
     try {
-        File file = new File (this.jar);
-        URL url = file.toURI().toURL();
-        URL[] urls = new URL[] {url};
-  			ClassLoader cl = new URLClassLoader(urls);
-  			cls = cl.loadClass(className);
+        cls = load(className);
+        getIndex(cls);
     }
     catch (Exception ex) {}
 
     return cls;
   }
 
+  /**
+    * Loads several classes from the jar files and builds their combined dispatch index
+    *
+    * @param classNames The names of the classes, in order of precedence
+    * @return The classes, with null from the first one that could not be loaded on
+    */
+  public Class[] accessJar(String[] classNames) {
+    Class[] classes = new Class[classNames.length];
+    try {
+      for (int i = 0; i < classNames.length; i++) {
+        classes[i] = load(classNames[i]);
+      }
+      getIndex(classes);
+    }
+    catch (Exception ex) {}
+
+    return classes;
+  }
+
+  /**
+    * Loads a class from the jar files, all of which are opened by a single class loader
+    *
+    * @param className The name of the class
+    * @return The class
+    * @throws Exception If the class cannot be loaded
+    */
+  private Class load(String className) throws Exception {
+    return getLoader().loadClass(className);
+  }
+
+  /**
+    * Determines if one of the jar files contains a class, without loading it
+    *
+    * @param className The name of the class
+    * @return Whether or not the class file is in one of the jar files
+    * @throws IOException If a jar file cannot be opened
+    */
+  public boolean hasClass(String className) throws IOException {
+    return getLoader().findResource(className + ".class") != null;
+  }
+
+  /**
+    * Returns the class loader of the jar files, creating it on first use. Each jar file is opened once, by
+    * this loader.
+    *
+    * @return The class loader
+    * @throws IOException If the name of a jar file is not a valid URL
+    */
+  private URLClassLoader getLoader() throws IOException {
+    if (this.loader == null) {
+      URL[] urls = new URL[this.jars.length];
+      for (int i = 0; i < urls.length; i++) {
+        urls[i] = new File(this.jars[i]).toURI().toURL();
+      }
+      this.loader = new URLClassLoader(urls);
+    }
+    return this.loader;
+  }
+
   /**
     * Checks if the entered method exists in the class
     *
@@ -56,57 +135,33 @@ public class ProcessJar {
     * @return The method object of the concrete method inside the class, null otherwise
     */
   public Method validMethod(String method, Class c, ArrayList<Node> methodParams) {
-    Method[] methods = c.getDeclaredMethods();
-    ArrayList<Method> matchedNames = new ArrayList<Method>();
-
-    for(Method item : methods) {
-      if (item.getName().equals(method)) {
-        matchedNames.add(item);
-      }
-    }
+    return getIndex(c).lookup(method, methodParams);
+  }
 
-    for (Method item2 : matchedNames) {
-      Class[] paramTypes = item2.getParameterTypes();
-      if(methodParams.size() == 0){
-        if(paramTypes.length != 0){
-          continue;
-        }
-        return item2;
-      }
+  /**
+    * Returns the dispatch index of a class, building it on first use
+    *
+    * @param c The class containing all concrete methods
+    * @return The dispatch index of the class
+    */
+  public MethodIndex getIndex(Class c) {
+    return getIndex(new Class[] {c});
+  }
 
-      for (int i = 0; i < paramTypes.length; i++){
-        String currentParam = methodParams.get(i).getType();
-        String expectedParam = paramTypes[i].getName();
-
-        if(paramTypes.length != methodParams.size()){
-          break;
-        }
-
-        else if(expectedParam.equals("java.lang.String")) {
-          if (!currentParam.equals("String")) {
-            break;
-          }
-        }
-        else if(expectedParam.equals("java.lang.Integer")) {
-          if (!currentParam.equals("Integer") && !currentParam.equals("int")) {
-            break;
-          }
-        }
-        else if(expectedParam.equals("java.lang.Float")) {
-          if (!currentParam.equals("Float") && !currentParam.equals("float")) {
-            break;
-          }
-        }
-
-        else if(!expectedParam.equals(currentParam)) {
-            break;
-        }
-
-        if(i == (paramTypes.length-1))
-          return item2;
-      }
+  /**
+    * Returns the combined dispatch index of several classes, building it on first use
+    *
+    * @param classes The classes containing all concrete methods, in order of precedence
+    * @return The dispatch index of the classes
+    */
+  public MethodIndex getIndex(Class[] classes) {
+    List<Class> key = Arrays.asList(classes.clone());
+    MethodIndex index = this.indexes.get(key);
+    if (index == null) {
+      index = new MethodIndex(classes);
+      this.indexes.put(key, index);
     }
-    return null;
+    return index;
   }
 
   /**
@@ -115,6 +170,28 @@ public class ProcessJar {
 	* @param c The class that is being looked at
 	*/
 	public void listMethods(Class c) {
+		listMethods(c, System.out);
+	}
+
+  /**
+	* listMethods
+	* Lists all the methods in the reflected classes, one class after the other
+	* @param classes The classes that are being looked at
+	* @param out The stream the methods are printed to
+	*/
+	public void listMethods(Class[] classes, PrintStream out) {
+		for (Class c : classes) {
+			listMethods(c, out);
+		}
+	}
+
+  /**
+	* listMethods
+	* Lists all the methods in the reflected class, along with their parameters and the return types
+	* @param c The class that is being looked at
+	* @param out The stream the methods are printed to
+	*/
+	public void listMethods(Class c, PrintStream out) {
 		Method[] methods = c.getDeclaredMethods(); //get a list of all methods in the class
 
 		loop:
@@ -129,38 +206,38 @@ public class ProcessJar {
   				}
   			}
 
-  			System.out.print("(");
-  			System.out.print(item.getName()); //print the name of the method
+  			out.print("(");
+  			out.print(item.getName()); //print the name of the method
 
 
   			for(Class par : params) { //print the list of parameters
   				if(par.getName() == "java.lang.String") {
-  					System.out.print(" string");
+  					out.print(" string");
   				}
   				else if(par.getName() == "java.lang.Integer") {
-  					System.out.print(" int");
+  					out.print(" int");
   				}
   				else if(par.getName() == "java.lang.Float") {
-  					System.out.print(" float");
+  					out.print(" float");
   				}
   				else {
-  					System.out.print(" " + par.getName());
+  					out.print(" " + par.getName());
   				}
   			}
 
-  			System.out.print(") : ");
+  			out.print(") : ");
 
   			if(item.getReturnType().getName() == "java.lang.String" ){ //print the return type
-  				System.out.println("string");
+  				out.println("string");
   			}
   			else if(item.getReturnType().getName() == "java.lang.Integer") {
-  				System.out.println("int");
+  				out.println("int");
   			}
   			else if(item.getReturnType().getName() == "java.lang.Float") {
-  				System.out.println("float");
+  				out.println("float");
   			}
   			else {
-  				System.out.println(item.getReturnType().getName());
+  				out.println(item.getReturnType().getName());
   			}
 
 			}
@@ -0,0 +1,100 @@
+package methods;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Purity class
+ *
+ * Decides which methods always return the same result for the same arguments, and so may be cached or folded
+ *
+ * A method is pure only when it has been marked pure, by setPure or the comma-separated function names of the
+ * methods.pure system property, or when it carries an annotation named Pure. Everything else is impure: a loaded
+ * method may keep state, so calling it fewer times than the expression says would change its results. The random
+ * number methods of the bundled Commands class are marked impure from the start.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Purity {
+  private static final String[] DEFAULT_IMPURE = {"rand", "randFloat"};
+
+  private HashMap<String, Boolean> marks = new HashMap<String, Boolean>();
+  private WeakHashMap<Invoker, Boolean> purity = new WeakHashMap<Invoker, Boolean>();
+  private WeakHashMap<MethodIndex, Boolean> indexes = new WeakHashMap<MethodIndex, Boolean>();
+
+  /**
+    * Purity constructor
+    *
+    */
+  public Purity() {
+    for (String name : DEFAULT_IMPURE) {
+      this.marks.put(name, Boolean.FALSE);
+    }
+    for (String name : System.getProperty("methods.pure", "").split(",")) {
+      if (!name.trim().isEmpty()) {
+        this.marks.put(name.trim(), Boolean.TRUE);
+      }
+    }
+  }
+
+  /**
+    * Marks every overload of a function as pure or impure
+    *
+    * @param name The name of the function
+    * @param pure Whether or not calls of the function may be cached or folded
+    */
+  public synchronized void setPure(String name, boolean pure) {
+    this.marks.put(name, pure);
+    this.purity.clear();
+    this.indexes.clear();
+  }
+
+  /**
+    * Determines if any method of a dispatch index may be pure, so that sharing its calls can pay off
+    *
+    * @param index The dispatch index of the loaded methods
+    * @return Whether or not a function is marked pure or a method of the index is annotated Pure
+    */
+  public synchronized boolean hasPure(MethodIndex index) {
+    Boolean pure = this.indexes.get(index);
+    if (pure == null) {
+      pure = this.marks.containsValue(Boolean.TRUE);
+      for (Class cls : index.getIndexedClasses()) {
+        for (Method m : cls.getDeclaredMethods()) {
+          for (Annotation a : m.getAnnotations()) {
+            if (!pure && a.annotationType().getSimpleName().equals("Pure") && this.marks.get(m.getName()) == null) {
+              pure = true;
+            }
+          }
+        }
+      }
+      this.indexes.put(index, pure);
+    }
+    return pure;
+  }
+
+  /**
+    * Determines if the results of a method may be cached
+    *
+    * @param m The invoker of the method
+    * @return Whether or not the method is pure
+    */
+  public synchronized boolean isPure(Invoker m) {
+    Boolean pure = this.purity.get(m);
+    if (pure == null) {
+      pure = this.marks.get(m.getMethod().getName());
+      for (Annotation a : m.getMethod().getAnnotations()) {
+        String name = a.annotationType().getSimpleName();
+        if (pure == null && name.equals("Pure")) {
+          pure = true;
+        }
+      }
+      if (pure == null) {
+        pure = false;
+      }
+      this.purity.put(m, pure);
+    }
+    return pure;
+  }
+}
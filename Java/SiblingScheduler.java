@@ -0,0 +1,225 @@
+package methods;
+
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * SiblingScheduler class
+ *
+ * Evaluates the function arguments of a call concurrently on a work-stealing pool
+ *
+ * Every function argument of a call keeps an estimate of how long it takes to evaluate. Arguments estimated to
+ * take at least the threshold are forked when there are two or more of them; all other arguments are evaluated
+ * inline, in order. An argument that has never been evaluated starts from the estimate of its method in other
+ * calls, and is forked when its method has never been timed. Forked arguments work towards the Watchdog deadline
+ * of the expression that forked them.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class SiblingScheduler {
+  public static final long DEFAULT_THRESHOLD_NANOS = 100000;
+
+  private ForkJoinPool pool;
+  private long threshold;
+  private Map<Invoker, Cost> methodCosts = Collections.synchronizedMap(new WeakHashMap<Invoker, Cost>());
+
+  /**
+    * SiblingScheduler default constructor
+    *
+    */
+  public SiblingScheduler() {
+    this(new ForkJoinPool(), DEFAULT_THRESHOLD_NANOS);
+  }
+
+  /**
+    * SiblingScheduler constructor
+    *
+    * @param pool The pool arguments are forked on
+    * @param threshold The shortest estimated evaluation time, in nanoseconds, of an argument worth forking
+    */
+  public SiblingScheduler(ForkJoinPool pool, long threshold) {
+    this.pool = pool;
+    this.threshold = threshold;
+  }
+
+  /**
+    * Returns the pool arguments are forked on
+    *
+    * @return The pool
+    */
+  public ForkJoinPool getPool() {
+    return this.pool;
+  }
+
+  /**
+    * Returns the shortest estimated evaluation time of an argument worth forking
+    *
+    * @return The threshold in nanoseconds
+    */
+  public long getThreshold() {
+    return this.threshold;
+  }
+
+  /**
+    * Creates the cost estimate of a function argument
+    *
+    * @param m The invoker of the method called by the argument
+    * @return The estimate, shared with no other argument
+    */
+  public Cost cost(Invoker m) {
+    return new Cost(this.methodCosts.computeIfAbsent(m, k -> new Cost(null)));
+  }
+
+  /**
+    * Evaluates the arguments of a call
+    *
+    * @param args Handles taking no arguments that produce the argument values
+    * @param costs The cost estimates of the function arguments, null for the other arguments
+    * @return The argument values
+    * @throws Throwable Anything thrown while evaluating an argument
+    */
+  public Object[] evaluate(MethodHandle[] args, Cost[] costs) throws Throwable {
+    boolean[] fork = new boolean[args.length];
+    int last = -1;
+    int expensive = 0;
+    for (int i = 0; i < args.length; i++) {
+      if (costs[i] != null && costs[i].getEstimate() >= this.threshold) {
+        fork[i] = true;
+        last = i;
+        expensive++;
+      }
+    }
+
+    Object[] values = new Object[args.length];
+    if (expensive < 2) {
+      for (int i = 0; i < args.length; i++) {
+        values[i] = evaluate(args[i], costs[i]);
+      }
+      return values;
+    }
+
+    // The last expensive argument is evaluated by this thread while the others are forked
+    ForkJoinTask<?>[] forked = new ForkJoinTask<?>[args.length];
+    boolean inPool = ForkJoinTask.getPool() == this.pool;
+    long deadline = Watchdog.getDeadline();
+    try {
+      for (int i = 0; i < last; i++) {
+        if (fork[i]) {
+          Task task = new Task(args[i], costs[i], deadline);
+          forked[i] = inPool ? task.fork() : this.pool.submit(task);
+        }
+      }
+      for (int i = 0; i < args.length; i++) {
+        if (forked[i] == null) {
+          values[i] = evaluate(args[i], costs[i]);
+        }
+      }
+      for (int i = 0; i < last; i++) {
+        if (forked[i] != null) {
+          values[i] = forked[i].join();
+        }
+      }
+    }
+    catch (Throwable e) {
+      for (ForkJoinTask<?> task : forked) {
+        if (task != null) {
+          task.cancel(false);
+        }
+      }
+      throw e;
+    }
+    return values;
+  }
+
+  /**
+    * Evaluates one argument, timing function arguments
+    *
+    * @param arg The handle producing the argument value
+    * @param cost The cost estimate of the argument, null if it is not a function argument
+    * @return The argument value
+    * @throws Throwable Anything thrown while evaluating the argument
+    */
+  private static Object evaluate(MethodHandle arg, Cost cost) throws Throwable {
+    if (cost == null) {
+      return (Object) arg.invokeExact();
+    }
+    long start = System.nanoTime();
+    Object value = (Object) arg.invokeExact();
+    cost.record(System.nanoTime() - start);
+    return value;
+  }
+
+  /**
+    * Cost estimate of a function argument, or of all calls of a method
+    */
+  public static class Cost {
+    private final Cost method;
+    private volatile long nanos = -1;
+
+    Cost(Cost method) {
+      this.method = method;
+    }
+
+    /**
+      * Returns the estimated evaluation time, Long.MAX_VALUE when nothing has been timed yet
+      *
+      * @return The estimate in nanoseconds
+      */
+    public long getEstimate() {
+      long estimate = this.nanos;
+      if (estimate < 0 && this.method != null) {
+        estimate = this.method.nanos;
+      }
+      return estimate < 0 ? Long.MAX_VALUE : estimate;
+    }
+
+    /**
+      * Folds an evaluation time into the estimate. Concurrent updates may be lost, which only makes the
+      * estimate a little less recent.
+      *
+      * @param elapsed The evaluation time in nanoseconds
+      */
+    void record(long elapsed) {
+      long estimate = this.nanos;
+      this.nanos = estimate < 0 ? elapsed : (3*estimate + elapsed)/4;
+      if (this.method != null) {
+        this.method.record(elapsed);
+      }
+    }
+  }
+
+  /**
+    * Forked evaluation of one argument, towards the Watchdog deadline of the expression it belongs to
+    */
+  private static class Task extends RecursiveTask<Object> {
+    private static final long serialVersionUID = 1L;
+
+    private final MethodHandle arg;
+    private final Cost cost;
+    private final long deadline;
+
+    Task(MethodHandle arg, Cost cost, long deadline) {
+      this.arg = arg;
+      this.cost = cost;
+      this.deadline = deadline;
+    }
+
+    protected Object compute() {
+      long previous = Watchdog.setDeadline(this.deadline);
+      try {
+        return evaluate(this.arg, this.cost);
+      }
+      catch (RuntimeException | Error e) {
+        throw e;
+      }
+      catch (Throwable e) {
+        // Every failed call is reported the same way, whatever it threw
+        throw new ArithmeticException();
+      }
+      finally {
+        Watchdog.setDeadline(previous);
+      }
+    }
+  }
+}
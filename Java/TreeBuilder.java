@@ -0,0 +1,53 @@
+package methods;
+
+/**
+ * TreeBuilder interface
+ *
+ * Receives the nodes found by the ExpressionParser. Nodes are referred to by the ids the builder hands out.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public interface TreeBuilder {
+
+  /**
+    * Starts a new tree and creates its initial root node
+    *
+    * @return The id of the initial root node
+    */
+  int root();
+
+  /**
+    * Creates a node without attaching it to its parent
+    *
+    * @param parent The id of the parent node
+    * @param tag The type tag of the node
+    * @param text The buffer holding the text of the node
+    * @param length The length of the text in the buffer
+    * @param offset Where this node was found in the parsed string
+    * @return The id of the new node
+    */
+  int node(int parent, NodeType tag, char[] text, int length, int offset);
+
+  /**
+    * Adds a node to the children of another node
+    *
+    * @param parent The id of the parent node
+    * @param child The id of the child node
+    */
+  void addChild(int parent, int child);
+
+  /**
+    * Tells the builder that a function node will not get any more children
+    *
+    * @param node The id of the function node
+    */
+  void close(int node);
+
+  /**
+    * Returns the parent of a node
+    *
+    * @param node The id of the node
+    * @return The id of the parent node
+    */
+  int parent(int node);
+}
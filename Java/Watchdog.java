@@ -0,0 +1,275 @@
+package methods;
+
+import java.lang.invoke.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Watchdog class
+ *
+ * Bounds how long expressions, and the calls of chosen functions, may take
+ *
+ * A guarded call runs on a worker thread while the evaluating thread waits for it until its deadline: the timeout
+ * of its function, or the end of the timeout of the expression being evaluated, whichever comes first. When the
+ * deadline passes, the worker is interrupted and left behind, and the evaluating thread throws a
+ * CallTimeoutException right away, however long the loaded method keeps running. Only the arguments of the call are
+ * handed to the worker, so nothing it does afterwards touches the evaluation.
+ *
+ * A watchdog is immutable; changing a timeout creates a new one sharing the same workers. Compiled expressions are
+ * bound to the watchdog they were compiled with.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class Watchdog {
+  private static final MethodHandle CALL;
+  // The deadline of the expression each thread is evaluating, 0 if there is none. It belongs to the thread rather
+  // than to a watchdog, so that threads evaluating part of an expression can take it over with setDeadline.
+  private static final ThreadLocal<long[]> DEADLINES = ThreadLocal.withInitial(() -> new long[1]);
+
+  static {
+    try {
+      CALL = MethodHandles.lookup().findVirtual(Watchdog.class, "call", MethodType.methodType(Object.class, MethodHandle.class, String.class, int.class, Object[].class));
+    }
+    catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final ExecutorService workers;
+  private final long expressionMillis;
+  private final Map<String, Long> functionMillis;
+
+  /**
+    * Watchdog constructor, without any timeouts
+    */
+  public Watchdog() {
+    this(Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "call-worker");
+      t.setDaemon(true);
+      return t;
+    }), 0, new HashMap<String, Long>());
+  }
+
+  /**
+    * Watchdog constructor
+    *
+    * @param workers The threads guarded calls run on
+    * @param expressionMillis The timeout of expressions, 0 for none
+    * @param functionMillis The timeout of the calls of each function
+    */
+  private Watchdog(ExecutorService workers, long expressionMillis, Map<String, Long> functionMillis) {
+    this.workers = workers;
+    this.expressionMillis = expressionMillis;
+    this.functionMillis = functionMillis;
+  }
+
+  /**
+    * Returns a watchdog with a different timeout for whole expressions
+    *
+    * @param millis The timeout in milliseconds, 0 for none
+    * @return The new watchdog
+    */
+  public Watchdog withExpressionTimeout(long millis) {
+    return new Watchdog(this.workers, Math.max(millis, 0), this.functionMillis);
+  }
+
+  /**
+    * Returns a watchdog with a different timeout for the calls of a function
+    *
+    * @param function The function as it is written in expressions
+    * @param millis The timeout in milliseconds, 0 for none
+    * @return The new watchdog
+    */
+  public Watchdog withFunctionTimeout(String function, long millis) {
+    HashMap<String, Long> functionMillis = new HashMap<String, Long>(this.functionMillis);
+    if (millis > 0) {
+      functionMillis.put(function, millis);
+    }
+    else {
+      functionMillis.remove(function);
+    }
+    return new Watchdog(this.workers, this.expressionMillis, functionMillis);
+  }
+
+  /**
+    * Returns the timeout of whole expressions
+    *
+    * @return The timeout in milliseconds, 0 if there is none
+    */
+  public long getExpressionTimeout() {
+    return this.expressionMillis;
+  }
+
+  /**
+    * Returns the timeouts of the calls of functions
+    *
+    * @return The timeout in milliseconds of each function that has one
+    */
+  public Map<String, Long> getFunctionTimeouts() {
+    return Collections.unmodifiableMap(this.functionMillis);
+  }
+
+  /**
+    * Determines if the calls of a function are guarded
+    *
+    * @param function The function as it is written in expressions
+    * @return Whether or not its calls run on a worker thread
+    */
+  public boolean guards(String function) {
+    return this.expressionMillis > 0 || this.functionMillis.containsKey(function);
+  }
+
+  /**
+    * Starts the timeout of an expression evaluated on the calling thread. An expression evaluated while another one
+    * is, by a method it calls, shares the deadline of the outer one.
+    *
+    * @return The deadline to give back to end
+    */
+  public long begin() {
+    long[] deadline = DEADLINES.get();
+    long previous = deadline[0];
+    if (previous == 0 && this.expressionMillis > 0) {
+      deadline[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.expressionMillis);
+    }
+    return previous;
+  }
+
+  /**
+    * Ends the timeout of an expression evaluated on the calling thread
+    *
+    * @param previous The deadline returned by begin
+    */
+  public void end(long previous) {
+    setDeadline(previous);
+  }
+
+  /**
+    * Returns the deadline of the expression the calling thread is evaluating, to hand it to another thread
+    *
+    * @return The deadline in System.nanoTime() terms, 0 if there is none
+    */
+  public static long getDeadline() {
+    return DEADLINES.get()[0];
+  }
+
+  /**
+    * Makes the calling thread work towards the deadline of an expression, e.g. one another thread is evaluating
+    *
+    * @param deadline The deadline returned by getDeadline, 0 for none
+    * @return The previous deadline of the calling thread, to restore afterwards
+    */
+  public static long setDeadline(long deadline) {
+    long[] current = DEADLINES.get();
+    long previous = current[0];
+    current[0] = deadline;
+    return previous;
+  }
+
+  /**
+    * Wraps the handle calling a method so that the call is guarded if its function is
+    *
+    * @param call The handle calling the method
+    * @param function The function as it is written in the expression
+    * @param offset The offset of the function in the expression
+    * @return A handle with the same type
+    */
+  public MethodHandle guard(MethodHandle call, String function, int offset) {
+    if (!guards(function)) {
+      return call;
+    }
+    int arity = call.type().parameterCount();
+    MethodHandle target = call.asType(MethodType.genericMethodType(arity)).asSpreader(Object[].class, arity);
+    return MethodHandles.insertArguments(CALL, 0, this, target, function, offset).asCollector(Object[].class, arity).asType(call.type());
+  }
+
+  /**
+    * Calls a method, guarded if its function is
+    *
+    * @param m The invoker of the method
+    * @param args The arguments of the call, which must not be reused
+    * @param function The function as it is written in the expression
+    * @param offset The offset of the function in the expression
+    * @return The result of the call
+    * @throws CallTimeoutException If the call does not finish before its deadline
+    * @throws Throwable Anything thrown by the method
+    */
+  public Object invoke(Invoker m, Object[] args, String function, int offset) throws Throwable {
+    return await(() -> m.invoke(args), function, offset);
+  }
+
+  /**
+    * Calls a method through a spread handle, guarded
+    *
+    * @param target The handle taking the arguments as an Object[]
+    * @param function The function as it is written in the expression
+    * @param offset The offset of the function in the expression
+    * @param args The arguments of the call
+    * @return The result of the call
+    * @throws Throwable Anything thrown by the method
+    */
+  private Object call(MethodHandle target, String function, int offset, Object[] args) throws Throwable {
+    return await(() -> (Object) target.invokeExact(args), function, offset);
+  }
+
+  /**
+    * Runs a call on a worker thread and waits for it until its deadline
+    *
+    * @param call The call
+    * @param function The function as it is written in the expression
+    * @param offset The offset of the function in the expression
+    * @return The result of the call
+    * @throws CallTimeoutException If the call does not finish before its deadline
+    * @throws Throwable Anything thrown by the call
+    */
+  private Object await(Call call, String function, int offset) throws Throwable {
+    long now = System.nanoTime();
+    long wait = Long.MAX_VALUE;
+    long millis = 0;
+    Long limit = this.functionMillis.get(function);
+    if (limit != null) {
+      wait = TimeUnit.MILLISECONDS.toNanos(limit);
+      millis = limit;
+    }
+    long deadline = getDeadline();
+    if (deadline != 0 && deadline - now < wait) {
+      wait = Math.max(deadline - now, 0);
+      millis = this.expressionMillis;
+    }
+    if (wait == Long.MAX_VALUE) {
+      // Outside of an expression, e.g. when folding while compiling, with no timeout of its own
+      return call.call();
+    }
+
+    Future<Object> future = this.workers.submit(() -> {
+      try {
+        return call.call();
+      }
+      catch (Throwable e) {
+        throw new InvocationTargetException(e);
+      }
+    });
+    try {
+      return future.get(wait, TimeUnit.NANOSECONDS);
+    }
+    catch (TimeoutException e) {
+      future.cancel(true);
+      throw new CallTimeoutException(Diagnostic.timeout(function, millis, offset));
+    }
+    catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw e;
+    }
+    catch (ExecutionException e) {
+      throw ((InvocationTargetException) e.getCause()).getTargetException();
+    }
+  }
+
+  /**
+   * A call that may throw anything
+   */
+  private interface Call {
+    Object call() throws Throwable;
+  }
+}
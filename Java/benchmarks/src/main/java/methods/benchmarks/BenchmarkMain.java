@@ -0,0 +1,30 @@
+package methods.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * BenchmarkMain class
+ *
+ * Runs the benchmarks selected on the command line, always with the gc profiler so allocation rates are reported
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class BenchmarkMain {
+
+  /**
+    * Main function
+    *
+    * @param args The usual JMH command line, e.g. a benchmark name pattern and -p depth=8
+    * @throws Exception If the command line is invalid or a benchmark fails
+    */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    Options options = new OptionsBuilder()
+      .parent(cmd)
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
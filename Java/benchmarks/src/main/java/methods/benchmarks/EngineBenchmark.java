@@ -0,0 +1,88 @@
+package methods.benchmarks;
+
+import java.text.ParseException;
+import methods.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * EngineBenchmark class
+ *
+ * Measures evaluating through one shared Engine from several threads at once, checking every result
+ *
+ * The expressions call rand, which is never folded or cached, so every evaluation calls methods. rand(1) always
+ * returns 0, which keeps the results known in advance. A wrong result fails the benchmark.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class EngineBenchmark {
+  private static final int LINES = 64;
+
+  private Engine engine;
+  private CompiledExpression shared;
+  private PreparedExpression prepared;
+  private String[] lines = new String[LINES];
+
+  @Setup(Level.Trial)
+  public void setUp() throws ParseException {
+    ProcessJar jar = new ProcessJar(System.getProperty("methods.jar", "../commands.jar"));
+    this.engine = new Engine(jar.getIndex(jar.accessJar("Commands")));
+    this.shared = this.engine.compile("(add (add (rand 1) 7) (mul (rand 1) 9))");
+    this.prepared = this.engine.prepare("(add (rand 1) $x)", new String[] {"x"}, new Class[] {int.class});
+    for (int i = 0; i < LINES; i++) {
+      this.lines[i] = "(add (rand 1) " + i + ")";
+    }
+  }
+
+  /**
+    * Every thread evaluates the same compiled expression
+    */
+  @Benchmark
+  public Object evaluateShared() {
+    Object result = this.shared.evaluate();
+    if (!Integer.valueOf(7).equals(result)) {
+      throw new IllegalStateException("Expected 7, got " + result);
+    }
+    return result;
+  }
+
+  /**
+    * Every thread looks lines up in the shared expression cache, then evaluates them
+    */
+  @Benchmark
+  public Object evaluateLines(Cursor cursor) throws ParseException {
+    int i = cursor.next();
+    Object result = this.engine.evaluate(this.lines[i]);
+    if (!Integer.valueOf(i).equals(result)) {
+      throw new IllegalStateException("Expected " + i + ", got " + result);
+    }
+    return result;
+  }
+
+  /**
+    * Every thread evaluates the same prepared expression with the values of the lines
+    */
+  @Benchmark
+  public Object evaluatePrepared(Cursor cursor) {
+    int i = cursor.next();
+    Object result = this.prepared.evaluate(i);
+    if (!Integer.valueOf(i).equals(result)) {
+      throw new IllegalStateException("Expected " + i + ", got " + result);
+    }
+    return result;
+  }
+
+  /**
+   * The line a thread evaluates next
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int line;
+
+    int next() {
+      this.line = (this.line + 1) % LINES;
+      return this.line;
+    }
+  }
+}
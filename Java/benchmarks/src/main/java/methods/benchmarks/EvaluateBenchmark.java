@@ -0,0 +1,67 @@
+package methods.benchmarks;
+
+import java.io.*;
+import java.text.ParseException;
+import methods.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * EvaluateBenchmark class
+ *
+ * Measures evaluating a parse tree, and handling an entered line the way the REPL does
+ *
+ * Evaluator.evaluateTree stores the results in the tree it evaluates, so every call gets a tree built beforehand
+ * and outside the measurement.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+@State(Scope.Thread)
+public class EvaluateBenchmark {
+  private ParseTree tree = new ParseTree();
+  private Interpreter repl;
+  private PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+  @Setup(Level.Trial)
+  public void setUp(Shape shape) {
+    this.repl = interpreter(shape);
+  }
+
+  @Setup(Level.Invocation)
+  public void buildTree(Shape shape) throws ParseException {
+    this.tree.buildTree(shape.expression);
+  }
+
+  @Benchmark
+  public Node evaluateTree(Shape shape) throws ParseException {
+    new Evaluator(this.tree).evaluateTree(this.tree.getRoot(), shape.cls, shape.jar, shape.expression);
+    return this.tree.getRoot();
+  }
+
+  /**
+    * A line entered again: its compiled form comes from the expression cache
+    */
+  @Benchmark
+  public boolean replRepeatedLine(Shape shape) {
+    return this.repl.processLine(shape.expression);
+  }
+
+  /**
+    * A line entered for the first time: it is parsed, resolved and compiled before it is evaluated
+    */
+  @Benchmark
+  public boolean replNewLine(Shape shape) {
+    return interpreter(shape).processLine(shape.expression);
+  }
+
+  /**
+    * Creates an Interpreter printing to nowhere
+    *
+    * @param shape The benchmarked expression and class
+    * @return The Interpreter
+    */
+  private Interpreter interpreter(Shape shape) {
+    Interpreter interpreter = new Interpreter(shape.jar, shape.cls);
+    interpreter.setOut(this.sink);
+    return interpreter;
+  }
+}
@@ -0,0 +1,30 @@
+package methods.benchmarks;
+
+import java.text.ParseException;
+import methods.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ParseBenchmark class
+ *
+ * Measures building the Node parse tree and the flat parse tree of an expression
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+@State(Scope.Thread)
+public class ParseBenchmark {
+  private ParseTree tree = new ParseTree();
+  private ExpressionParser parser = new ExpressionParser();
+  private FlatTree flat = new FlatTree();
+
+  @Benchmark
+  public ParseTree buildTree(Shape shape) throws ParseException {
+    this.tree.buildTree(shape.expression);
+    return this.tree;
+  }
+
+  @Benchmark
+  public int parseFlat(Shape shape) throws ParseException {
+    return this.parser.parse(shape.expression, this.flat);
+  }
+}
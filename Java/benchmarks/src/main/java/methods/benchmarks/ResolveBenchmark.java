@@ -0,0 +1,31 @@
+package methods.benchmarks;
+
+import java.lang.reflect.Method;
+import java.text.ParseException;
+import java.util.ArrayList;
+import methods.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ResolveBenchmark class
+ *
+ * Measures finding the method of a call whose arguments are two literals of the benchmarked type
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+@State(Scope.Thread)
+public class ResolveBenchmark {
+  private ArrayList<Node> params;
+
+  @Setup(Level.Trial)
+  public void setUp(Shape shape) throws ParseException {
+    ParseTree tree = new ParseTree();
+    tree.buildTree("(add " + shape.leaf() + " " + shape.leaf() + ")");
+    this.params = tree.getRoot().getChildren();
+  }
+
+  @Benchmark
+  public Method validMethod(Shape shape) {
+    return shape.jar.validMethod("add", shape.cls, this.params);
+  }
+}
@@ -0,0 +1,89 @@
+package methods.benchmarks;
+
+import methods.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shape class
+ *
+ * The expression a benchmark works on, generated from its parameters
+ *
+ * An expression is the sum of width subtrees. Each subtree is a complete binary tree of add calls, depth levels
+ * deep, whose leaves are literals of one type. String literals are stringLength characters long.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+@State(Scope.Benchmark)
+public class Shape {
+  @Param({"1", "4", "8"})
+  public int depth;
+
+  @Param({"1", "4"})
+  public int width;
+
+  @Param({"int", "float", "string"})
+  public String literal;
+
+  @Param({"8", "1024"})
+  public int stringLength;
+
+  public String expression;
+  public ProcessJar jar;
+  public Class cls;
+
+  /**
+    * Generates the expression and loads the bundled commands jar, or the jar named by the methods.jar property
+    *
+    */
+  @Setup(Level.Trial)
+  public void setUp() {
+    StringBuilder exp = new StringBuilder();
+    for (int i = 1; i < this.width; i++) {
+      exp.append("(add ");
+      subtree(exp, this.depth);
+      exp.append(' ');
+    }
+    subtree(exp, this.depth);
+    for (int i = 1; i < this.width; i++) {
+      exp.append(')');
+    }
+    this.expression = exp.toString();
+
+    this.jar = new ProcessJar(System.getProperty("methods.jar", "../commands.jar"));
+    this.cls = this.jar.accessJar("Commands");
+  }
+
+  /**
+    * Appends a complete binary tree of add calls
+    *
+    * @param exp The expression being generated
+    * @param depth The number of levels of calls
+    */
+  private void subtree(StringBuilder exp, int depth) {
+    if (depth == 0) {
+      exp.append(leaf());
+      return;
+    }
+    exp.append("(add ");
+    subtree(exp, depth-1);
+    exp.append(' ');
+    subtree(exp, depth-1);
+    exp.append(')');
+  }
+
+  /**
+    * Returns a literal of the benchmarked type
+    *
+    * @return The text of the literal
+    */
+  String leaf() {
+    switch (this.literal) {
+      case "int":
+        return "7";
+      case "float":
+        return "1.5";
+      default:
+        return '"' + "x".repeat(this.stringLength) + '"';
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package methods.benchmarks;
+
+import java.io.*;
+import java.text.ParseException;
+import methods.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * TreeShapeBenchmark class
+ *
+ * Measures evaluating very deep and very wide expressions with the recursive Evaluator and the iterative
+ * FlatEvaluator
+ *
+ * A deep expression nests size add calls, (add 1 (add 1 ... 1)). A wide expression passes size add calls to one
+ * function, (add (add 1 1) (add 1 1) ...); no method takes that many arguments, so after evaluating them both
+ * evaluators report the outer call, and the Evaluator prints the report. Both evaluators store their results in the
+ * tree, so every call gets a tree parsed beforehand and outside the measurement.
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+@State(Scope.Thread)
+public class TreeShapeBenchmark {
+  @Param({"deep", "wide"})
+  public String shape;
+
+  @Param({"1000", "10000"})
+  public int size;
+
+  private String expression;
+  private ProcessJar jar;
+  private Class cls;
+  private ParseTree tree = new ParseTree();
+  private ExpressionParser parser = new ExpressionParser();
+  private FlatTree flatTree = new FlatTree();
+  private FlatEvaluator flatEvaluator;
+  private int root;
+  private PrintStream out;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if (this.shape.equals("deep")) {
+      this.expression = "(add 1 ".repeat(this.size) + "1" + ")".repeat(this.size);
+    }
+    else {
+      this.expression = "(add " + "(add 1 1) ".repeat(this.size) + ")";
+    }
+    this.jar = new ProcessJar(System.getProperty("methods.jar", "../commands.jar"));
+    this.cls = this.jar.accessJar("Commands");
+    this.flatEvaluator = new FlatEvaluator(this.jar.getIndex(this.cls));
+
+    // The Evaluator prints the reports of wide expressions
+    this.out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.setOut(this.out);
+  }
+
+  @Setup(Level.Invocation)
+  public void buildTrees() throws ParseException {
+    this.tree.buildTree(this.expression);
+    this.root = this.parser.tryParse(this.expression, this.flatTree);
+  }
+
+  @Benchmark
+  public Node evaluateTree() {
+    try {
+      new Evaluator(this.tree).evaluateTree(this.tree.getRoot(), this.cls, this.jar, this.expression);
+    }
+    catch (ParseException e) {
+      // Wide expressions
+    }
+    return this.tree.getRoot();
+  }
+
+  @Benchmark
+  public Diagnostic flatEvaluate() {
+    return this.flatEvaluator.evaluate(this.flatTree, this.root);
+  }
+}
@@ -0,0 +1,89 @@
+package methods;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ColumnarBatchTest class
+ *
+ * Checks the results printed for the rows of a CSV file
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ColumnarBatchTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  public void slowRowTimesOut() throws Exception {
+    ColumnarBatch batch = new ColumnarBatch(new MethodIndex(Rows.class), "(add (sleep $ms) $x)", 2);
+    batch.setWatchdog(new Watchdog().withExpressionTimeout(200));
+    String out = run(batch, "ms,x\n1,2\n5000,3\n2,4\n");
+    assertEquals("3\nCall to 'sleep' timed out after 200 ms at offset 6\n6\n", out);
+  }
+
+  @Test
+  public void columnTypeWidensAfterFirstChunk() throws Exception {
+    StringBuilder csv = new StringBuilder("a,b\n");
+    StringBuilder expected = new StringBuilder();
+    for (int r = 0; r < ColumnarBatch.CHUNK_ROWS + 10; r++) {
+      csv.append(r).append(',').append(r).append('\n');
+      expected.append(2.0f*r).append('\n');
+    }
+    // A float in the last chunk makes the whole column float, and a word the whole column String
+    csv.append("1.5,x\n");
+    expected.append("3.0\n");
+    ColumnarBatch batch = new ColumnarBatch(new MethodIndex(Rows.class), "(add $a $a)", 2);
+    assertEquals(expected.toString(), run(batch, csv.toString()));
+
+    batch = new ColumnarBatch(new MethodIndex(Rows.class), "(add $b \"!\")", 2);
+    String out = run(batch, csv.toString());
+    assertTrue(out.startsWith("0!\n1!\n"));
+    assertTrue(out.endsWith((ColumnarBatch.CHUNK_ROWS + 9) + "!\nx!\n"));
+  }
+
+  /**
+    * Evaluates a batch over a CSV file
+    *
+    * @param batch The batch
+    * @param csv The contents of the CSV file
+    * @return The printed results, with \n line separators
+    */
+  private String run(ColumnarBatch batch, String csv) throws Exception {
+    Path file = this.dir.resolve("rows.csv");
+    Files.write(file, csv.getBytes("UTF-8"));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (BatchReader reader = new BatchReader(file.toString())) {
+      PrintStream out = new PrintStream(bytes, true, "UTF-8");
+      batch.run(reader, out);
+      out.flush();
+    }
+    return bytes.toString("UTF-8").replace(System.lineSeparator(), "\n");
+  }
+
+  /**
+   * Methods called for the rows
+   */
+  public static class Rows {
+    public static int sleep(int millis) throws InterruptedException {
+      Thread.sleep(millis);
+      return millis;
+    }
+
+    public static int add(int x, int y) {
+      return x + y;
+    }
+
+    public static float add(float x, float y) {
+      return x + y;
+    }
+
+    public static String add(String x, String y) {
+      return x + y;
+    }
+  }
+}
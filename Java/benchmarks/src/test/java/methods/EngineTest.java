@@ -0,0 +1,149 @@
+package methods;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * EngineTest class
+ *
+ * Checks that one Engine gives every thread the right results while they compile, prepare and evaluate at once
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class EngineTest {
+  private static final int THREADS = 8;
+  private static final int ROUNDS = 2000;
+
+  private Engine engine = new Engine(new MethodIndex(Arithmetic.class));
+
+  @Test
+  public void threadsEvaluateDistinctExpressions() throws Exception {
+    run(t -> {
+      for (int i = 0; i < ROUNDS; i++) {
+        // Each thread has expressions of its own, and shares the ones of the same round with the others
+        assertEquals(t*1000 + i, this.engine.evaluate("(add (mul " + t + " 1000) " + i + ")"));
+        assertEquals(i + 1, this.engine.evaluate("(inc " + i + ")"));
+      }
+    });
+  }
+
+  @Test
+  public void threadsEvaluateSharedPreparedExpression() throws Exception {
+    PreparedExpression shared = this.engine.prepare("(add (mul $x $x) $y)", new String[] {"x", "y"}, new Class[] {int.class, int.class});
+    run(t -> {
+      PreparedExpression own = this.engine.prepare("(add $s \"-\" )", new String[] {"s"}, new Class[] {String.class});
+      for (int i = 0; i < ROUNDS; i++) {
+        assertEquals(i*i + t, shared.evaluate(i, t));
+        assertEquals(t + ":" + i + "-", own.evaluate(t + ":" + i));
+      }
+    });
+  }
+
+  @Test
+  public void threadsEvaluateSameCompiledExpression() throws Exception {
+    CompiledExpression shared = this.engine.compile("(add (mul 6 7) (mul 2 1))");
+    run(t -> {
+      for (int i = 0; i < ROUNDS; i++) {
+        assertEquals(44, shared.evaluate());
+      }
+    });
+  }
+
+  @Test
+  public void failedCallsThrowArithmeticException() throws Exception {
+    assertThrows(ArithmeticException.class, () -> this.engine.evaluate("(fail 1)"));
+    assertThrows(ArithmeticException.class, () -> this.engine.evaluate("(div 1 0)"));
+  }
+
+  @Test
+  public void errorsOfCalledMethodsFailTheCall() throws Exception {
+    assertThrows(ArithmeticException.class, () -> this.engine.evaluate("(crash 1)"));
+  }
+
+  @Test
+  public void preparedCallsFailLikeCompiledOnes() throws Exception {
+    Class[] types = {int.class};
+    assertThrows(ArithmeticException.class, () -> this.engine.prepare("(fail $x)", new String[] {"x"}, types).evaluate(1));
+    assertThrows(ArithmeticException.class, () -> this.engine.prepare("(div 1 $x)", new String[] {"x"}, types).evaluate(0));
+    assertThrows(ArithmeticException.class, () -> this.engine.prepare("(crash $x)", new String[] {"x"}, types).evaluate(1));
+  }
+
+  /**
+    * Runs a check on every thread at once, and fails with the first failure of any of them
+    *
+    * @param check The check, given the number of its thread
+    */
+  private static void run(Check check) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+        futures.add(pool.submit(() -> {
+          start.await();
+          check.run(thread);
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        try {
+          future.get(60, TimeUnit.SECONDS);
+        }
+        catch (ExecutionException e) {
+          if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+          }
+          throw e;
+        }
+      }
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * A check run by one thread
+   */
+  private interface Check {
+    void run(int thread) throws Exception;
+  }
+
+  /**
+   * Methods evaluated by the threads
+   */
+  public static class Arithmetic {
+    public static int add(int x, int y) {
+      return x + y;
+    }
+
+    public static int mul(int x, int y) {
+      return x*y;
+    }
+
+    public static int div(int x, int y) {
+      return x/y;
+    }
+
+    public static int fail(int x) throws Exception {
+      throw new Exception("Failed " + x);
+    }
+
+    public static int crash(int x) {
+      throw new StackOverflowError();
+    }
+
+    public static Integer inc(Integer x) {
+      return x + 1;
+    }
+
+    public static String add(String x, String y) {
+      return x + y;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package methods;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.annotation.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * ExpressionCompilerTest class
+ *
+ * Checks that compiled expressions call each method as often as the expression says, unless it is pure
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class ExpressionCompilerTest {
+  private Engine engine;
+
+  @BeforeEach
+  public void setUp() {
+    Counter.calls = 0;
+    this.engine = new Engine(new MethodIndex(Counter.class));
+  }
+
+  @Test
+  public void unmarkedMethodsAreNotFolded() throws Exception {
+    CompiledExpression next = this.engine.compile("(next 1)");
+    assertEquals(1, next.evaluate());
+    assertEquals(2, next.evaluate());
+    assertEquals(3, next.evaluate());
+  }
+
+  @Test
+  public void annotatedMethodsAreFolded() throws Exception {
+    CompiledExpression twice = this.engine.compile("(twice 4)");
+    assertEquals(1, Counter.calls);
+    assertEquals(8, twice.evaluate());
+    assertEquals(8, twice.evaluate());
+    assertEquals(1, Counter.calls);
+  }
+
+  @Test
+  public void markedMethodsAreFolded() throws Exception {
+    Purity purity = new Purity();
+    MemoCache memo = new MemoCache(purity);
+    purity.setPure("next", true);
+    Engine engine = new Engine(new MethodIndex(Counter.class), memo, null);
+    CompiledExpression next = engine.compile("(next 1)");
+    assertEquals(1, next.evaluate());
+    assertEquals(1, next.evaluate());
+  }
+
+  @Test
+  public void sharedCallsAreCalledOncePerEvaluation() {
+    Purity purity = new Purity();
+    purity.setPure("next", true);
+    PreparedExpression twice = prepare("(add (next $x) (mul (next $x) (next $x)))", purity);
+    assertEquals(2, twice.evaluate(1));
+    assertEquals(1, Counter.calls);
+    assertEquals(4 + 4*4, twice.evaluate(3));
+    assertEquals(4, Counter.calls);
+  }
+
+  @Test
+  public void unfoldedSharedCallsAreCalledOncePerEvaluation() {
+    Purity purity = new Purity();
+    purity.setPure("flaky", true);
+    String exp = "(add (flaky 1) (flaky 1))";
+    FlatTree tree = sharingTree(purity);
+    ExpressionCompiler compiler = new ExpressionCompiler(new MethodIndex(Counter.class));
+    compiler.setPurity(purity);
+    // flaky fails while it is being folded, so it is left to be called when the expression is evaluated
+    CompiledExpression twice = compiler.tryCompile(tree, new ExpressionParser().tryParse(exp, tree), exp);
+    int folds = Counter.calls;
+    assertEquals(2*(folds + 1), twice.evaluate());
+    assertEquals(2*(folds + 2), twice.evaluate());
+    assertEquals(folds + 2, Counter.calls);
+  }
+
+  @Test
+  public void unsharedCallsAreCalledForEveryReference() {
+    PreparedExpression twice = prepare("(add (next $x) (next $x))", new Purity());
+    assertEquals(1 + 2, twice.evaluate(1));
+    assertEquals(2, Counter.calls);
+  }
+
+  @Test
+  public void nothingIsSharedUntilSomethingIsPure() {
+    Purity purity = new Purity();
+    FlatTree tree = new FlatTree();
+    tree.setSharing(new MethodIndex(Plain.class), purity);
+    ExpressionParser parser = new ExpressionParser();
+    assertEquals(0, references(parser, tree, "(add (mul 2 3) (mul 2 3))"));
+    purity.setPure("mul", true);
+    // The second call becomes a reference, and the arguments it referred to are dropped with it
+    assertEquals(1, references(parser, tree, "(add (mul 2 3) (mul 2 3))"));
+    assertEquals(2, references(parser, tree, "(add (mul 2 3) (mul 3 2))"));
+  }
+
+  /**
+    * Parses an expression and counts the nodes that refer to an earlier equal one
+    *
+    * @param parser The parser
+    * @param tree The tree the expression is parsed into
+    * @param exp The expression
+    * @return The number of references
+    */
+  private static int references(ExpressionParser parser, FlatTree tree, String exp) {
+    parser.tryParse(exp, tree);
+    int count = 0;
+    for (int node = 0; node < tree.size(); node++) {
+      if (tree.getShared(node) != node) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+    * Prepares an expression with a single int variable $x, sharing the calls of pure methods
+    *
+    * @param exp The expression
+    * @param purity The rules deciding which methods are pure
+    * @return The prepared expression
+    */
+  private static PreparedExpression prepare(String exp, Purity purity) {
+    String[] names = {"x"};
+    Class[] types = {int.class};
+    FlatTree tree = sharingTree(purity);
+    tree.setVariables(names, types);
+    ExpressionCompiler compiler = new ExpressionCompiler(new MethodIndex(Counter.class));
+    compiler.setPurity(purity);
+    int root = new ExpressionParser().tryParse(exp, tree);
+    return compiler.tryPrepare(tree, root, exp, names, types);
+  }
+
+  /**
+    * Creates a tree sharing the calls of pure methods
+    *
+    * @param purity The rules deciding which methods are pure
+    * @return The tree
+    */
+  private static FlatTree sharingTree(Purity purity) {
+    FlatTree tree = new FlatTree();
+    tree.setSharing(new MethodIndex(Counter.class), purity);
+    return tree;
+  }
+
+  /**
+   * Marks a method pure, the way loaded classes do
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  public @interface Pure {}
+
+  /**
+   * Methods none of which is annotated Pure
+   */
+  public static class Plain {
+    public static int mul(int x, int y) {
+      return x*y;
+    }
+
+    public static int add(int x, int y) {
+      return x + y;
+    }
+  }
+
+  /**
+   * Methods counting how often they are called
+   */
+  public static class Counter {
+    static int calls;
+
+    public static int next(int step) {
+      calls += step;
+      return calls;
+    }
+
+    public static int flaky(int step) {
+      calls += step;
+      if (calls <= 2) {
+        throw new IllegalStateException();
+      }
+      return calls;
+    }
+
+    public static int mul(int x, int y) {
+      return x*y;
+    }
+
+    public static int add(int x, int y) {
+      return x + y;
+    }
+
+    @Pure
+    public static int twice(int x) {
+      calls++;
+      return 2*x;
+    }
+  }
+}
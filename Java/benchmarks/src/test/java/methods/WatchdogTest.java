@@ -0,0 +1,101 @@
+package methods;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * WatchdogTest class
+ *
+ * Checks that expressions stop at their deadline, whether their arguments are evaluated in order or concurrently
+ *
+ * @author 	Bruce Laird, Calvin Lau, Matthew Armstrong, Michael de Grood, SanHa Kim
+ */
+public class WatchdogTest {
+  private static final long TIMEOUT = 200;
+
+  private Watchdog watchdog = new Watchdog().withExpressionTimeout(TIMEOUT);
+  private ExpressionParser parser = new ExpressionParser();
+  private FlatTree tree = new FlatTree();
+  private ExpressionCompiler compiler = new ExpressionCompiler(new MethodIndex(Slow.class));
+
+  @BeforeEach
+  public void setUp() {
+    this.compiler.setWatchdog(this.watchdog);
+  }
+
+  @Test
+  public void slowCallTimesOut() {
+    assertTimesOut("(add (sleep 5000) (sleep 1))");
+  }
+
+  @Test
+  public void forkedSlowCallTimesOut() {
+    SiblingScheduler siblings = new SiblingScheduler(new ForkJoinPool(4), 0);
+    this.compiler.setSiblingScheduler(siblings);
+    try {
+      // The slow argument is forked, and the calling thread evaluates the quick one
+      assertTimesOut("(add (sleep 5000) (sleep 1))");
+    }
+    finally {
+      siblings.getPool().shutdownNow();
+    }
+  }
+
+  @Test
+  public void quickExpressionFinishes() {
+    SiblingScheduler siblings = new SiblingScheduler(new ForkJoinPool(4), 0);
+    this.compiler.setSiblingScheduler(siblings);
+    try {
+      assertEquals(3, evaluate("(add (sleep 1) (sleep 2))"));
+    }
+    finally {
+      siblings.getPool().shutdownNow();
+    }
+  }
+
+  /**
+    * Checks that an expression throws a CallTimeoutException soon after its timeout
+    *
+    * @param exp The expression
+    */
+  private void assertTimesOut(String exp) {
+    long start = System.nanoTime();
+    assertThrows(CallTimeoutException.class, () -> evaluate(exp));
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(millis < 10*TIMEOUT, "Timed out after " + millis + " ms");
+  }
+
+  /**
+    * Compiles and evaluates an expression within the timeout of the watchdog
+    *
+    * @param exp The expression
+    * @return The result of the expression
+    */
+  private Object evaluate(String exp) {
+    int root = this.parser.tryParse(exp, this.tree);
+    CompiledExpression expression = this.compiler.tryCompile(this.tree, root, exp);
+    long deadline = this.watchdog.begin();
+    try {
+      return expression.evaluate();
+    }
+    finally {
+      this.watchdog.end(deadline);
+    }
+  }
+
+  /**
+   * Methods taking as long as they are told to
+   */
+  public static class Slow {
+    public static int sleep(int millis) throws InterruptedException {
+      Thread.sleep(millis);
+      return millis;
+    }
+
+    public static int add(int x, int y) {
+      return x + y;
+    }
+  }
+}